@@ -0,0 +1,250 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic;
+
+import bmach.logic.memory.IMainMemory;
+import bmach.logic.memory.IMemoryCell;
+import bmach.logic.memory.MemoryCellNotificationData;
+import bmach.logic.processor.IProcessor;
+import bmach.logic.programcounter.IProgramCounter;
+import bmach.logic.registers.IRegister;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import util.patterns.observer.IObserver;
+import util.patterns.observer.ISubject;
+
+/**
+ * Collects the changes of a machine's memory cells, registers and program
+ * counter in bitmaps and hands them to its observers as a single ChangeSet
+ * per flush, instead of every observer being notified of every write.
+ *
+ * The bus is the only observer it attaches to each cell, register and
+ * program counter, so a write costs one bit no matter how many observers
+ * the bus has. Memories that are subjects themselves, like PagedMemory and
+ * DirectMemory, are observed as a whole instead of cell by cell. Observers
+ * are notified on the thread that calls flush() or stepCompleted(), with a
+ * ChangeSet as the notification data.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class ChangeEventBus implements ISubject {
+
+    /**
+     * Marks one memory cell or register as changed.
+     */
+    private class IndexObserver implements IObserver {
+
+        private final boolean register;
+        private final int index;
+
+        public IndexObserver(boolean register, int index) {
+            this.register = register;
+            this.index = index;
+        }
+
+        public void notifyObserver(Object notificationData) {
+            if (register) {
+                registerChanged(index);
+            } else {
+                cellChanged(index);
+            }
+        }
+    }
+    private List<IObserver> observers;
+    private long[] cells;
+    private int registers;
+    private boolean programCounter;
+    private volatile boolean dirty;
+    private long flushInterval;
+    private long lastFlush;
+    private IMemoryCell[] attachedCells;
+    private IObserver[] cellObservers;
+    private ISubject attachedMemory;
+    private IObserver memoryObserver;
+    private IRegister[] attachedRegisters;
+    private IObserver[] registerObservers;
+    private IProgramCounter attachedProgramCounter;
+    private IObserver programCounterObserver;
+
+    public ChangeEventBus() {
+        this.observers = new CopyOnWriteArrayList<IObserver>();
+        this.cells = new long[4];
+        this.registers = 0;
+        this.programCounter = false;
+        this.dirty = false;
+        this.flushInterval = 0;
+        this.lastFlush = 0;
+        this.programCounterObserver = new IObserver() {
+
+            public void notifyObserver(Object notificationData) {
+                programCounterChanged();
+            }
+        };
+        this.memoryObserver = new IObserver() {
+
+            public void notifyObserver(Object notificationData) {
+                if (notificationData instanceof MemoryCellNotificationData) {
+                    cellChanged(((MemoryCellNotificationData) notificationData).getIndex());
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts collecting the changes of a memory and a processor's registers
+     * and program counter, replacing those of any previously attached ones.
+     * @param memory the memory
+     * @param processor the processor
+     */
+    public synchronized void attach(IMainMemory memory, IProcessor processor) {
+        detach();
+        cells = new long[(memory.getNumberOfCells() + 63) / 64];
+        if (memory instanceof ISubject) {
+            attachedMemory = (ISubject) memory;
+            attachedMemory.addObserver(memoryObserver);
+            attachedCells = new IMemoryCell[0];
+        } else {
+            attachedCells = new IMemoryCell[memory.getNumberOfCells()];
+        }
+        cellObservers = new IObserver[attachedCells.length];
+        for (int i = 0; i < attachedCells.length; i++) {
+            attachedCells[i] = memory.get(i);
+            if (attachedCells[i] != null) {
+                cellObservers[i] = new IndexObserver(false, i);
+                attachedCells[i].addObserver(cellObservers[i]);
+            }
+        }
+        attachedRegisters = new IRegister[processor.getNumberOfRegisters()];
+        registerObservers = new IObserver[attachedRegisters.length];
+        for (int i = 0; i < attachedRegisters.length; i++) {
+            attachedRegisters[i] = processor.getRegister(i);
+            if (attachedRegisters[i] != null) {
+                registerObservers[i] = new IndexObserver(true, i);
+                attachedRegisters[i].addObserver(registerObservers[i]);
+            }
+        }
+        attachedProgramCounter = processor.getProgramCounter();
+        attachedProgramCounter.addObserver(programCounterObserver);
+    }
+
+    public synchronized void detach() {
+        if (attachedCells != null) {
+            for (int i = 0; i < attachedCells.length; i++) {
+                if (attachedCells[i] != null) {
+                    attachedCells[i].removeObserver(cellObservers[i]);
+                }
+            }
+            for (int i = 0; i < attachedRegisters.length; i++) {
+                if (attachedRegisters[i] != null) {
+                    attachedRegisters[i].removeObserver(registerObservers[i]);
+                }
+            }
+            attachedProgramCounter.removeObserver(programCounterObserver);
+        }
+        if (attachedMemory != null) {
+            attachedMemory.removeObserver(memoryObserver);
+        }
+        attachedMemory = null;
+        attachedCells = null;
+        cellObservers = null;
+        attachedRegisters = null;
+        registerObservers = null;
+        attachedProgramCounter = null;
+    }
+
+    /**
+     * Sets how often stepCompleted() flushes the collected changes.
+     * @param millis the minimum time between two flushes, or 0 to flush after every step
+     */
+    public void setFlushInterval(long millis) {
+        this.flushInterval = millis;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public synchronized void cellChanged(int address) {
+        cells[address >>> 6] |= 1L << address;
+        dirty = true;
+    }
+
+    public synchronized void registerChanged(int registerIndex) {
+        registers |= 1 << registerIndex;
+        dirty = true;
+    }
+
+    public synchronized void programCounterChanged() {
+        programCounter = true;
+        dirty = true;
+    }
+
+    /**
+     * Called by the machine after every step; flushes the collected changes
+     * if the flush interval has passed since the last flush.
+     */
+    public void stepCompleted() {
+        if (!dirty) {
+            return;
+        }
+        if (flushInterval > 0) {
+            long now = System.nanoTime();
+            if (now - lastFlush < flushInterval * 1000000L) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Notifies the observers of the changes collected since the last flush,
+     * if there are any, and starts collecting anew.
+     */
+    public void flush() {
+        ChangeSet changes;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            changes = new ChangeSet(cells, registers, programCounter);
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = 0;
+            }
+            registers = 0;
+            programCounter = false;
+            dirty = false;
+            lastFlush = System.nanoTime();
+        }
+        notifyObservers(changes);
+    }
+
+    public void addObserver(IObserver observer) {
+        this.observers.add(observer);
+    }
+
+    public void removeObserver(IObserver observer) {
+        this.observers.remove(observer);
+    }
+
+    public void notifyObservers(Object notificationData) {
+        for (Iterator<IObserver> it = observers.iterator(); it.hasNext();) {
+            IObserver iObserver = it.next();
+            iObserver.notifyObserver(notificationData);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic;
+
+/**
+ * The memory cells, registers and program counter that changed between two
+ * flushes of a ChangeEventBus. A cell or register is reported once, however
+ * many times it was written.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class ChangeSet {
+
+    private final long[] cells;
+    private final int registers;
+    private final boolean programCounter;
+
+    public ChangeSet(long[] cells, int registers, boolean programCounter) {
+        this.cells = new long[cells.length];
+        System.arraycopy(cells, 0, this.cells, 0, cells.length);
+        this.registers = registers;
+        this.programCounter = programCounter;
+    }
+
+    public boolean isCellChanged(int address) {
+        return (address >= 0) && ((address >>> 6) < cells.length) && ((cells[address >>> 6] & (1L << address)) != 0);
+    }
+
+    public boolean isRegisterChanged(int registerIndex) {
+        return (registerIndex >= 0) && (registerIndex < 32) && ((registers & (1 << registerIndex)) != 0);
+    }
+
+    public boolean isProgramCounterChanged() {
+        return programCounter;
+    }
+
+    /**
+     * Returns the first changed cell at or after an address, so that the
+     * changed cells can be visited with
+     * <code>for (int i = set.nextChangedCell(0); i >= 0; i = set.nextChangedCell(i + 1))</code>.
+     * @param from the address to start from
+     * @return the address of the changed cell, or -1 if there is none
+     */
+    public int nextChangedCell(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int word = from >>> 6;
+        if (word >= cells.length) {
+            return -1;
+        }
+        long bits = cells[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == cells.length) {
+                return -1;
+            }
+            bits = cells[word];
+        }
+    }
+
+    public int getChangedCellCount() {
+        int count = 0;
+        for (int i = 0; i < cells.length; i++) {
+            count += Long.bitCount(cells[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the changed registers as a bit mask.
+     * @return a mask in which bit i is set if register i changed
+     */
+    public int getChangedRegisters() {
+        return registers;
+    }
+
+    public boolean isEmpty() {
+        return (registers == 0) && (!programCounter) && (getChangedCellCount() == 0);
+    }
+}
@@ -29,4 +29,30 @@ public interface IBitPatternContainer {
     public void setContent(IBitPattern content);
 
     public void setContentValue(String value);
+
+    /**
+     * Returns the content's bits as an unsigned integer.
+     * @return the content's unsigned value
+     */
+    public int getUnsigned();
+
+    /**
+     * Returns the content's value in two's complement.
+     * @return the content's signed value
+     */
+    public int getSigned();
+
+    /**
+     * Sets the content's bits to the lowest bits of 'bits', without
+     * creating a new bit pattern.
+     * @param bits the new bits
+     */
+    public void setBits(int bits);
+
+    /**
+     * Copies the bits of a bit pattern into the content.
+     * @param value the bit pattern to copy
+     * @throws ArithmeticException if the bit pattern has a different length
+     */
+    public void copyFrom(IBitPattern value);
 }
@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+/**
+ * The breakpoints and watchpoints of a machine.
+ *
+ * A breakpoint pauses execution before the instruction at its address is
+ * executed; a watchpoint pauses execution after an instruction has read or
+ * written a memory cell or register. Breakpoints are kept in a bitmap
+ * indexed by address and watchpoints in a table of flags per cell and per
+ * register, so checking an instruction costs a few array loads - and
+ * nothing at all while isActive() returns false.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class Breakpoints {
+
+    public final static int WATCH_READ;
+    public final static int WATCH_WRITE;
+    private final static int NUMBER_OF_CELLS;
+    private final static int NUMBER_OF_REGISTERS;
+
+    static {
+        WATCH_READ = 1;
+        WATCH_WRITE = 2;
+        NUMBER_OF_CELLS = 256;
+        NUMBER_OF_REGISTERS = 16;
+    }
+    private final long[] breakpoints;
+    private final byte[] memoryWatches;
+    private final byte[] registerWatches;
+    private int breakpointCount;
+    private int watchCount;
+    private volatile boolean active;
+
+    public Breakpoints() {
+        this.breakpoints = new long[NUMBER_OF_CELLS / 64];
+        this.memoryWatches = new byte[NUMBER_OF_CELLS];
+        this.registerWatches = new byte[NUMBER_OF_REGISTERS];
+        this.breakpointCount = 0;
+        this.watchCount = 0;
+        this.active = false;
+    }
+
+    /**
+     * Checks whether any breakpoint or watchpoint is set.
+     * @return false if execution never has to be paused
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    public synchronized void setBreakpoint(int address, boolean enabled) {
+        address &= 0xFF;
+        if (isBreakpoint(address) != enabled) {
+            breakpoints[address >>> 6] ^= 1L << address;
+            breakpointCount += enabled ? 1 : -1;
+            updateActive();
+        }
+    }
+
+    public boolean isBreakpoint(int address) {
+        return (breakpoints[(address & 0xFF) >>> 6] & (1L << address)) != 0;
+    }
+
+    /**
+     * Sets the accesses to a memory cell that pause execution.
+     * @param address the cell's address
+     * @param flags a combination of WATCH_READ and WATCH_WRITE, or 0 to remove the watchpoint
+     */
+    public synchronized void setMemoryWatch(int address, int flags) {
+        address &= 0xFF;
+        watchCount += ((flags != 0) ? 1 : 0) - ((memoryWatches[address] != 0) ? 1 : 0);
+        memoryWatches[address] = (byte) flags;
+        updateActive();
+    }
+
+    public int getMemoryWatch(int address) {
+        return memoryWatches[address & 0xFF];
+    }
+
+    /**
+     * Sets the accesses to a register that pause execution.
+     * @param registerIndex the register's index
+     * @param flags a combination of WATCH_READ and WATCH_WRITE, or 0 to remove the watchpoint
+     */
+    public synchronized void setRegisterWatch(int registerIndex, int flags) {
+        registerIndex &= 0xF;
+        watchCount += ((flags != 0) ? 1 : 0) - ((registerWatches[registerIndex] != 0) ? 1 : 0);
+        registerWatches[registerIndex] = (byte) flags;
+        updateActive();
+    }
+
+    public int getRegisterWatch(int registerIndex) {
+        return registerWatches[registerIndex & 0xF];
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < breakpoints.length; i++) {
+            breakpoints[i] = 0;
+        }
+        for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+            memoryWatches[i] = 0;
+        }
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            registerWatches[i] = 0;
+        }
+        breakpointCount = 0;
+        watchCount = 0;
+        updateActive();
+    }
+
+    /**
+     * Checks whether execution must pause before the instruction at address.
+     * @param address the address of the next instruction
+     * @return true if there is a breakpoint at address
+     */
+    public boolean breaksAt(int address) {
+        // breakpoints can only be set in the first 256 cells
+        return ((address >>> 6) < breakpoints.length) && ((breakpoints[address >>> 6] & (1L << address)) != 0);
+    }
+
+    /**
+     * Checks whether executing an instruction accesses a watched memory cell
+     * or register.
+     * @param word the instruction word
+     * @return true if execution must pause after the instruction
+     */
+    public boolean watches(int word) {
+        return watches(word, -1);
+    }
+
+    /**
+     * Checks whether executing an instruction, which may be one of the wide
+     * instructions of extended profiles, accesses a watched memory cell or
+     * register.
+     * @param word the instruction word
+     * @param wideAddress the 16-bit address held in the word that follows a wide instruction
+     * @return true if execution must pause after the instruction
+     */
+    public boolean watches(int word, int wideAddress) {
+        return (watchCount > 0) && accessesWatched(word, wideAddress);
+    }
+
+    private void updateActive() {
+        active = (breakpointCount > 0) || (watchCount > 0);
+    }
+
+    private boolean accessesWatched(int word, int wideAddress) {
+        int r = (word >>> 8) & 0xF;
+        int s = (word >>> 4) & 0xF;
+        int t = word & 0xF;
+        int address = word & 0xFF;
+        switch (word >>> 12) {
+            case 0x1:
+                return memoryWatched(address, WATCH_READ) || registerWatched(r, WATCH_WRITE);
+            case 0x2:
+                return registerWatched(r, WATCH_WRITE);
+            case 0x3:
+                return registerWatched(r, WATCH_READ) || memoryWatched(address, WATCH_WRITE);
+            case 0x4:
+                return registerWatched(s, WATCH_READ) || registerWatched(t, WATCH_WRITE);
+            case 0x5:
+            case 0x6:
+            case 0x7:
+            case 0x8:
+            case 0x9:
+                return registerWatched(s, WATCH_READ) || registerWatched(t, WATCH_READ) || registerWatched(r, WATCH_WRITE);
+            case 0xA:
+                return registerWatched(r, WATCH_READ | WATCH_WRITE);
+            case 0xB:
+            case 0xF:
+                return registerWatched(r, WATCH_READ) || registerWatched(0, WATCH_READ);
+            case 0xD:
+                return memoryWatched(wideAddress, WATCH_READ) || registerWatched(r, WATCH_WRITE);
+            case 0xE:
+                return registerWatched(r, WATCH_READ) || memoryWatched(wideAddress, WATCH_WRITE);
+            default:
+                return false;
+        }
+    }
+
+    private boolean memoryWatched(int address, int flags) {
+        // watchpoints can only be set on the first 256 cells
+        return (address >= 0) && (address < NUMBER_OF_CELLS) && ((memoryWatches[address] & flags) != 0);
+    }
+
+    private boolean registerWatched(int registerIndex, int flags) {
+        return (registerWatches[registerIndex] & flags) != 0;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+import bmach.logic.processor.FastProcessor;
+
+/**
+ * Detects programs that can never halt. A machine has no inputs, so once it
+ * returns to a state (memory, registers and program counter) it has been in
+ * before it will repeat the same sequence of states forever.
+ *
+ * The detector applies Brent's cycle detection algorithm to a hash of the
+ * state which is updated incrementally with every register or memory write.
+ * Hash matches are confirmed by comparing the full states, so a reported
+ * loop is never a false positive.
+ *
+ * The loop's entry is found by running the program again on two machines
+ * which use the same I/O ports as the original one. A read from the input
+ * port restarts the search, so the replay never reads any input.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class CycleDetector {
+
+    public final static int ENTRY_UNKNOWN;
+    private final static long[] WEIGHTS;
+
+    static {
+        ENTRY_UNKNOWN = -1;
+        WEIGHTS = new long[MachineSnapshot.SIZE];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            WEIGHTS[i] = (z ^ (z >>> 31)) | 1;
+        }
+    }
+    private long stateHash;
+    private long savedHash;
+    private long power;
+    private long lambda;
+    private long period;
+    private long steps;
+    private int inputPort;
+    private int outputPort;
+    private final MachineSnapshot initial;
+    private final MachineSnapshot saved;
+    private final MachineSnapshot current;
+
+    public CycleDetector() {
+        this.initial = new MachineSnapshot();
+        this.saved = new MachineSnapshot();
+        this.current = new MachineSnapshot();
+        this.inputPort = IOPorts.NONE;
+        this.outputPort = IOPorts.NONE;
+    }
+
+    /**
+     * Starts a new search from the current state of machine.
+     * @param machine the machine whose execution is checked
+     */
+    public void reset(IMachine machine) {
+        initial.capture(machine);
+        stateHash = 0;
+        for (int i = 0; i < MachineSnapshot.PROGRAM_COUNTER_OFFSET; i++) {
+            int value = (i < MachineSnapshot.REGISTERS_OFFSET) ? initial.getMemory(i - MachineSnapshot.MEMORY_OFFSET) : initial.getRegister(i - MachineSnapshot.REGISTERS_OFFSET);
+            stateHash += WEIGHTS[i] * (value & 0xFF);
+        }
+        saved.capture(machine);
+        savedHash = hash(initial.getProgramCounter());
+        power = 1;
+        lambda = 0;
+        period = 0;
+        steps = 0;
+        inputPort = machine.getIOPorts().getInputPort();
+        outputPort = machine.getIOPorts().getOutputPort();
+    }
+
+    /**
+     * Updates the state hash after a register has been written.
+     * @param registerIndex the register's index
+     * @param oldValue the register's previous value
+     * @param newValue the register's new value
+     */
+    public void registerWritten(int registerIndex, int oldValue, int newValue) {
+        stateHash += WEIGHTS[MachineSnapshot.REGISTERS_OFFSET + registerIndex] * ((newValue & 0xFF) - (oldValue & 0xFF));
+    }
+
+    /**
+     * Updates the state hash after a memory cell has been written.
+     * @param address the cell's address
+     * @param oldValue the cell's previous value
+     * @param newValue the cell's new value
+     */
+    public void memoryWritten(int address, int oldValue, int newValue) {
+        stateHash += WEIGHTS[MachineSnapshot.MEMORY_OFFSET + address] * ((newValue & 0xFF) - (oldValue & 0xFF));
+    }
+
+    /**
+     * Checks the state reached after an instruction has been executed and
+     * all its writes have been reported.
+     * @param machine the machine whose execution is checked
+     * @param programCounter the address of the next instruction
+     * @return true if the machine has been in the same state before
+     */
+    public boolean check(IMachine machine, int programCounter) {
+        long hash = hash(programCounter);
+        lambda++;
+        steps++;
+        if (hash == savedHash) {
+            current.capture(machine);
+            if (current.equals(saved)) {
+                period = lambda;
+                return true;
+            }
+        }
+        if (lambda == power) {
+            saved.capture(machine);
+            savedHash = hash;
+            power <<= 1;
+            lambda = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of instructions executed in each iteration of the
+     * loop found by check().
+     * @return the loop's period
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Finds the first state of the loop found by check(), by executing the
+     * program again from the state passed to reset(). The loop is entered
+     * within the steps checked before it was found, so the search gives up
+     * after that many steps instead of running forever if the replay does
+     * not follow the original run.
+     * @return the address of the instruction where the loop is entered, or
+     * ENTRY_UNKNOWN if it cannot be found
+     */
+    public int findEntryAddress() {
+        if (period == 0) {
+            return ENTRY_UNKNOWN;
+        }
+        Machine tortoise = createMachine();
+        Machine hare = createMachine();
+        FastProcessor tortoiseProcessor = (FastProcessor) tortoise.getProcessor();
+        FastProcessor hareProcessor = (FastProcessor) hare.getProcessor();
+        hareProcessor.run(period);
+        MachineSnapshot tortoiseState = MachineSnapshot.of(tortoise);
+        MachineSnapshot hareState = MachineSnapshot.of(hare);
+        long remaining = steps - period;
+        while (!tortoiseState.equals(hareState)) {
+            if (remaining-- <= 0) {
+                return ENTRY_UNKNOWN;
+            }
+            tortoiseProcessor.step();
+            hareProcessor.step();
+            tortoiseState.capture(tortoise);
+            hareState.capture(hare);
+        }
+        return tortoiseState.getProgramCounter();
+    }
+
+    private Machine createMachine() {
+        Machine machine = new Machine(new FastProcessor());
+        machine.setUndoCapacity(0);
+        machine.getIOPorts().setInputPort(inputPort);
+        machine.getIOPorts().setOutputPort(outputPort);
+        machine.getProcessor().init(machine);
+        initial.restore(machine);
+        return machine;
+    }
+
+    private long hash(int programCounter) {
+        return stateHash + WEIGHTS[MachineSnapshot.PROGRAM_COUNTER_OFFSET] * (programCounter & 0xFF);
+    }
+}
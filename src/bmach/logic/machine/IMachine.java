@@ -16,6 +16,7 @@
  */
 package bmach.logic.machine;
 
+import bmach.logic.ChangeEventBus;
 import bmach.logic.machine.parser.MalformedInstructionException;
 import bmach.logic.memory.IMainMemory;
 import bmach.logic.processor.IProcessor;
@@ -31,6 +32,8 @@ public interface IMachine extends Runnable, IObserver {
 
     public void reset();
 
+    public MachineProfile getProfile();
+
     public IProcessor getProcessor();
 
     public IMainMemory getMemory();
@@ -49,5 +52,21 @@ public interface IMachine extends Runnable, IObserver {
 
     public long getSleepTime();
 
+    public void setTurbo(boolean turbo);
+
+    public boolean getTurbo();
+
     public void nextStep();
+
+    public boolean stepBack();
+
+    public void clearUndoHistory();
+
+    public int reverseContinue();
+
+    public Breakpoints getBreakpoints();
+
+    public IOPorts getIOPorts();
+
+    public ChangeEventBus getEventBus();
 }
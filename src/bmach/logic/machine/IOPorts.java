@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The memory-mapped input and output ports of a machine.
+ *
+ * A LOAD from the input port reads the next byte of the machine's input
+ * instead of the memory cell, or 0 once the input is exhausted; a STORE to
+ * the output port appends the register's value to the machine's output and
+ * leaves the memory cell untouched. Both ports are disabled (NONE) by
+ * default. Unless other streams are set, input is supplied with
+ * provideInput() and the output is collected in memory and returned by
+ * getOutput().
+ *
+ * Ports are read by the processor when the machine is reset or run, and
+ * bytes written to the output cannot be undone with stepBack().
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class IOPorts {
+
+    public final static int NONE;
+
+    static {
+        NONE = -1;
+    }
+    private int inputPort;
+    private int outputPort;
+    private byte[] providedInput;
+    private int inputStart;
+    private int inputEnd;
+    private InputStream input;
+    private ByteArrayOutputStream collectedOutput;
+    private OutputStream output;
+    private long bytesRead;
+    private IOException lastError;
+
+    public IOPorts() {
+        this.inputPort = NONE;
+        this.outputPort = NONE;
+        this.providedInput = new byte[256];
+        this.inputStart = 0;
+        this.inputEnd = 0;
+        this.input = null;
+        this.collectedOutput = new ByteArrayOutputStream();
+        this.output = collectedOutput;
+        this.bytesRead = 0;
+        this.lastError = null;
+    }
+
+    /**
+     * Sets the address of the input port.
+     * @param address the port's address, or NONE to disable the port
+     */
+    public synchronized void setInputPort(int address) {
+        this.inputPort = (address < 0) ? NONE : address;
+    }
+
+    public synchronized int getInputPort() {
+        return inputPort;
+    }
+
+    /**
+     * Sets the address of the output port.
+     * @param address the port's address, or NONE to disable the port
+     */
+    public synchronized void setOutputPort(int address) {
+        this.outputPort = (address < 0) ? NONE : address;
+    }
+
+    public synchronized int getOutputPort() {
+        return outputPort;
+    }
+
+    public synchronized boolean isEnabled() {
+        return (inputPort != NONE) || (outputPort != NONE);
+    }
+
+    /**
+     * Reads the input from a stream instead of the bytes given to
+     * provideInput().
+     * @param in the stream, or null to go back to provideInput()
+     */
+    public synchronized void setInput(InputStream in) {
+        this.input = (in == null) ? null : new BufferedInputStream(in);
+        clearInput();
+    }
+
+    /**
+     * Appends bytes to the input read from the input port.
+     * @param data the bytes
+     */
+    public synchronized void provideInput(byte[] data) {
+        if (inputEnd + data.length > providedInput.length) {
+            int length = inputEnd - inputStart;
+            byte[] target = providedInput;
+            if (length + data.length > providedInput.length) {
+                target = new byte[Math.max(providedInput.length * 2, length + data.length)];
+            }
+            System.arraycopy(providedInput, inputStart, target, 0, length);
+            providedInput = target;
+            inputStart = 0;
+            inputEnd = length;
+        }
+        System.arraycopy(data, 0, providedInput, inputEnd, data.length);
+        inputEnd += data.length;
+    }
+
+    /**
+     * Discards the input given to provideInput() that has not been read.
+     */
+    public synchronized void clearInput() {
+        inputStart = 0;
+        inputEnd = 0;
+    }
+
+    /**
+     * Writes the output to a stream instead of collecting it for
+     * getOutput(). The stream is buffered and flushed whenever the machine
+     * stops.
+     * @param out the stream, or null to collect the output again
+     */
+    public synchronized void setOutput(OutputStream out) {
+        flush();
+        this.output = (out == null) ? collectedOutput : new BufferedOutputStream(out);
+    }
+
+    /**
+     * Returns the output collected since the last call to clearOutput(),
+     * unless the output is written to a stream.
+     * @return the collected bytes
+     */
+    public synchronized byte[] getOutput() {
+        return collectedOutput.toByteArray();
+    }
+
+    /**
+     * Returns the collected output as text, one character per byte.
+     * @return the collected output
+     */
+    public synchronized String getOutputString() {
+        try {
+            return collectedOutput.toString("ISO-8859-1");
+        } catch (IOException ioe) {
+            return collectedOutput.toString();
+        }
+    }
+
+    public synchronized void clearOutput() {
+        collectedOutput.reset();
+    }
+
+    /**
+     * Returns the number of bytes read from the input port since the
+     * machine was created.
+     * @return the number of bytes read
+     */
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the last error of the input or output stream; reads that fail
+     * return 0 and writes that fail are dropped.
+     * @return the error, or null if there has been none
+     */
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Reads the next byte of the input. Called by the processor on a LOAD
+     * from the input port.
+     * @return the byte, or 0 if the input is exhausted
+     */
+    public synchronized int read() {
+        bytesRead++;
+        if (input == null) {
+            return (inputStart < inputEnd) ? providedInput[inputStart++] & 0xFF : 0;
+        }
+        try {
+            int b = input.read();
+            return (b < 0) ? 0 : b;
+        } catch (IOException ioe) {
+            lastError = ioe;
+            return 0;
+        }
+    }
+
+    /**
+     * Appends a byte to the output. Called by the processor on a STORE to
+     * the output port.
+     * @param value the byte
+     */
+    public synchronized void write(int value) {
+        try {
+            output.write(value & 0xFF);
+        } catch (IOException ioe) {
+            lastError = ioe;
+        }
+    }
+
+    public synchronized void flush() {
+        try {
+            output.flush();
+        } catch (IOException ioe) {
+            lastError = ioe;
+        }
+    }
+}
@@ -16,13 +16,12 @@
  */
 package bmach.logic.machine;
 
+import bmach.logic.ChangeEventBus;
 import bmach.logic.machine.parser.IInstructionParser;
 import bmach.logic.machine.parser.InstructionParser;
 import bmach.logic.machine.parser.MalformedInstructionException;
 import bmach.logic.memory.IMainMemory;
-import bmach.logic.memory.IMemoryAddress;
-import bmach.logic.memory.MainMemory;
-import bmach.logic.memory.MemoryAddress;
+import bmach.logic.processor.FastProcessor;
 import bmach.logic.processor.IProcessor;
 import bmach.logic.processor.MalformedProcessorInstructionException;
 import bmach.logic.processor.Processor;
@@ -31,9 +30,11 @@ import bmach.logic.processor.ProcessorUtils;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import util.binary.bitpattern.BitPattern;
 import util.binary.bitpattern.BitPatternOverflowException;
+import util.binary.bitpattern.BitPatternUtils;
 import util.binary.bitpattern.IBitPattern;
 import util.patterns.observer.IObserver;
 
@@ -44,32 +45,111 @@ import util.patterns.observer.IObserver;
 public class Machine implements IMachine {
 
     private final static long DEFAULT_SLEEP_TIME;
+    private final static int TURBO_SLICE;
+    private final static int DEFAULT_UNDO_CAPACITY;
     public final static int STATUS_OK;
     public final static int STATUS_UNKNOWN_INSTRUCTION;
     public final static int STATUS_UNKNOWN_ERROR;
+    public final static int STATUS_INSTRUCTION_LIMIT_REACHED;
+    public final static int STATUS_INFINITE_LOOP;
 
     static {
         DEFAULT_SLEEP_TIME = 500;
+        TURBO_SLICE = 65536;
+        DEFAULT_UNDO_CAPACITY = 16384;
         STATUS_OK = 0;
         STATUS_UNKNOWN_INSTRUCTION = 1;
         STATUS_UNKNOWN_ERROR = 2;
+        STATUS_INSTRUCTION_LIMIT_REACHED = 3;
+        STATUS_INFINITE_LOOP = 4;
     }
     private IProcessor processor;
     private IMainMemory memory;
-    private boolean stop;
+    private volatile boolean stop;
     private long sleepTime;
     private int statusCode;
     private String statusMsg;
-    private boolean stepByStep;
+    private volatile boolean stepByStep;
+    private boolean turbo;
+    private boolean deferChanges;
+    private long instructionLimit;
+    private long instructionCount;
+    private final Object stepLock;
+    private UndoJournal undoJournal;
+    private CycleDetector cycleDetector;
+    private boolean loopDetected;
+    private int loopEntryAddress;
+    private long loopPeriod;
+    private final Breakpoints breakpoints;
+    private boolean paused;
+    private boolean skipBreakpoint;
+    private ChangeEventBus eventBus;
+    private MachineProfile profile;
+    private final IOPorts ioPorts;
+    private long cycleBytesRead;
 
     public Machine() {
-        processor = new Processor();
-        memory = new MainMemory();
+        this(new Processor());
+    }
+
+    /**
+     * Creates a machine with the given profile that executes its programs on
+     * a Processor.
+     * @param profile the machine's profile
+     */
+    public Machine(MachineProfile profile) {
+        this(new Processor(), profile);
+    }
+
+    /**
+     * Creates a machine that executes its programs on the given processor,
+     * e.g. a FastProcessor instead of the default Processor.
+     * @param processor the processor implementation to use
+     */
+    public Machine(IProcessor processor) {
+        this(processor, MachineProfile.STANDARD);
+    }
+
+    /**
+     * Creates a machine with the given profile that executes its programs on
+     * the given processor. Extended profiles need a Processor; they do not
+     * record undo information and cannot detect infinite loops.
+     * @param processor the processor implementation to use
+     * @param profile the machine's profile
+     * @throws IllegalArgumentException if the processor does not support the profile
+     */
+    public Machine(IProcessor processor, MachineProfile profile) {
+        if (profile.isExtended() && (processor instanceof FastProcessor)) {
+            throw new IllegalArgumentException("FastProcessor only supports the standard profile.");
+        }
+        this.processor = processor;
+        this.profile = profile;
+        memory = profile.createMemory();
         stop = false;
         sleepTime = DEFAULT_SLEEP_TIME;
         statusCode = STATUS_OK;
         statusMsg = "";
         stepByStep = false;
+        turbo = false;
+        deferChanges = false;
+        instructionLimit = 0;
+        instructionCount = 0;
+        stepLock = new Object();
+        undoJournal = profile.isExtended() ? null : new UndoJournal(DEFAULT_UNDO_CAPACITY);
+        cycleDetector = null;
+        loopDetected = false;
+        loopEntryAddress = 0;
+        loopPeriod = 0;
+        breakpoints = new Breakpoints();
+        paused = false;
+        skipBreakpoint = false;
+        eventBus = null;
+        ioPorts = new IOPorts();
+        cycleBytesRead = 0;
+    }
+
+    public MachineProfile getProfile() {
+        return profile;
     }
 
     public IMainMemory getMemory() {
@@ -91,10 +171,17 @@ public class Machine implements IMachine {
     public void reset() {
         processor.init(this);
         memory.clear();
+        if (undoJournal != null) {
+            undoJournal.clear();
+        }
+        flushChanges();
     }
 
     public void setStepByStep(boolean stepByStep) {
-        this.stepByStep = stepByStep;
+        synchronized (stepLock) {
+            this.stepByStep = stepByStep;
+            stepLock.notifyAll();
+        }
     }
 
     public boolean getStepByStep() {
@@ -103,31 +190,227 @@ public class Machine implements IMachine {
 
     public void nextStep() {
         proceed();
+        synchronized (stepLock) {
+            stepLock.notifyAll();
+        }
+    }
+
+    /**
+     * Enables or disables turbo mode. In turbo mode run() executes the program
+     * without sleeping between steps, without notifying the processor's
+     * observers of each instruction and without flushing the event bus until
+     * execution stops. Turbo mode is ignored while executing step-by-step.
+     * @param turbo true to run at full speed
+     */
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+    }
+
+    public boolean getTurbo() {
+        return turbo;
+    }
+
+    /**
+     * Limits the number of instructions run() may execute. When the limit is
+     * reached the machine stops with STATUS_INSTRUCTION_LIMIT_REACHED.
+     * @param instructionLimit the maximum number of instructions, or 0 for no limit
+     */
+    public void setInstructionLimit(long instructionLimit) {
+        this.instructionLimit = instructionLimit;
+    }
+
+    public long getInstructionLimit() {
+        return instructionLimit;
+    }
+
+    /**
+     * Returns the number of instructions executed since run() was last called.
+     * @return the number of executed instructions
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * Sets how many instructions can be undone with stepBack(). Undo
+     * information is recorded while executing normally or step-by-step, but
+     * not in turbo mode.
+     * @param capacity the maximum number of instructions that can be undone, or 0 to disable recording
+     */
+    public void setUndoCapacity(int capacity) {
+        undoJournal = ((capacity > 0) && (!profile.isExtended())) ? new UndoJournal(capacity) : null;
+    }
+
+    /**
+     * Forgets the recorded instructions, e.g. after the state has been
+     * replaced by a MachineSnapshot, so that stepBack() cannot undo them.
+     */
+    public void clearUndoHistory() {
+        if (undoJournal != null) {
+            undoJournal.clear();
+        }
+    }
+
+    public int getUndoCapacity() {
+        return (undoJournal == null) ? 0 : undoJournal.getCapacity();
+    }
+
+    /**
+     * Returns the machine's memory-mapped input and output ports. Their
+     * addresses are read by the processor when the machine is reset or run,
+     * and the output is flushed whenever run() returns.
+     * @return the machine's I/O ports
+     */
+    public IOPorts getIOPorts() {
+        return ioPorts;
+    }
+
+    /**
+     * Returns the breakpoints and watchpoints checked by run(). When one of
+     * them is hit the machine switches to step-by-step execution and its
+     * processor notifies its observers with the "pause" notification.
+     * @return the machine's breakpoints
+     */
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    /**
+     * Returns the bus that reports the changes of the machine's memory,
+     * registers and program counter. The bus is created the first time this
+     * method is called, so machines nobody observes do not pay for it. It is
+     * flushed after every step - or as often as its flush interval allows -
+     * and whenever the machine stops, pauses, steps back or loads a program.
+     * @return the machine's event bus
+     */
+    public synchronized ChangeEventBus getEventBus() {
+        if (eventBus == null) {
+            eventBus = new ChangeEventBus();
+            eventBus.attach(memory, processor);
+        }
+        return eventBus;
+    }
+
+    private void flushChanges() {
+        if (eventBus != null) {
+            eventBus.flush();
+        }
+    }
+
+    /**
+     * Enables or disables the detection of infinite loops. When run() finds
+     * that the machine has returned to a previous state it stops with
+     * STATUS_INFINITE_LOOP; getLoopEntryAddress() and getLoopPeriod() then
+     * describe the loop. Not available with extended profiles.
+     * @param cycleDetection true to detect infinite loops
+     */
+    public void setCycleDetection(boolean cycleDetection) {
+        cycleDetector = (cycleDetection && (!profile.isExtended())) ? new CycleDetector() : null;
+    }
+
+    public boolean getCycleDetection() {
+        return cycleDetector != null;
+    }
+
+    /**
+     * Returns the address of the first instruction of the infinite loop found
+     * by the last run.
+     * @return the loop's entry address, or CycleDetector.ENTRY_UNKNOWN if it
+     * could not be found
+     */
+    public int getLoopEntryAddress() {
+        return loopEntryAddress;
+    }
+
+    /**
+     * Returns the number of instructions in each iteration of the infinite
+     * loop found by the last run.
+     * @return the loop's period
+     */
+    public long getLoopPeriod() {
+        return loopPeriod;
+    }
+
+    /**
+     * Undoes the last executed instruction, restoring the register or memory
+     * cell it overwrote and the program counter.
+     * @return false if there is no instruction to undo
+     */
+    public boolean stepBack() {
+        if ((undoJournal == null) || undoJournal.isEmpty()) {
+            return false;
+        }
+        int entry = undoJournal.pop();
+        int oldValue = UndoJournal.getOldValue(entry);
+        int kind = UndoJournal.getKind(entry);
+        if (kind == UndoJournal.KIND_REGISTER) {
+            processor.setRegisterValue(UndoJournal.getIndex(entry), oldValue);
+        } else if (kind == UndoJournal.KIND_MEMORY) {
+            memory.setValue(UndoJournal.getIndex(entry), oldValue);
+        }
+        processor.getProgramCounter().jumpTo(UndoJournal.getProgramCounter(entry));
+        instructionCount--;
+        if (cycleDetector != null) {
+            cycleDetector.reset(this);
+            cycleBytesRead = ioPorts.getBytesRead();
+        }
+        flushChanges();
+        return true;
+    }
+
+    /**
+     * Undoes instructions until the next instruction is at a breakpoint or
+     * there are no more instructions to undo.
+     * @return the number of undone instructions
+     */
+    public int reverseContinue() {
+        int count = 0;
+        while (stepBack()) {
+            count++;
+            if (breakpoints.breaksAt(processor.getProgramCounter().getIndex())) {
+                skipBreakpoint = true;
+                break;
+            }
+        }
+        return count;
     }
 
     private void load(Object o) throws MalformedInstructionException {
         int i = 0;
         IInstructionParser p;
         if (o instanceof InputStream) {
-            p = new InstructionParser((InputStream) o);
+            p = new InstructionParser(new InputStreamReader((InputStream) o), profile.isExtended());
         } else if (o instanceof Reader) {
-            p = new InstructionParser((Reader) o);
+            p = new InstructionParser((Reader) o, profile.isExtended());
         } else {
             return;
         }
         String inst;
 
         while ((inst = p.parseNextInstruction()) != null) {
-            IMemoryAddress address1 = new MemoryAddress("0x" + Integer.toHexString(i++));
-            IMemoryAddress address2 = new MemoryAddress("0x" + Integer.toHexString(i++));
+            if (i >= memory.getNumberOfCells()) {
+                throw new MalformedInstructionException(p.getLineNumber(), inst);
+            }
+            int word = Integer.parseInt(inst, 2);
+
+            memory.setValue(i++, word >>> 8);
+            memory.setValue(i++, word);
+        }
 
-            memory.get(address1).setContentValue(inst.substring(0, 8));
-            memory.get(address2).setContentValue(inst.substring(8, 16));
+        if (processor instanceof FastProcessor) {
+            FastProcessor fastProcessor = (FastProcessor) processor;
+            if (fastProcessor.getExecutionMode() == FastProcessor.MODE_COMPILED) {
+                fastProcessor.compile(memory);
+            }
         }
+        flushChanges();
     }
 
     public void halt() {
-        stop = true;
+        synchronized (stepLock) {
+            stop = true;
+            stepLock.notifyAll();
+        }
     }
 
     public int getStatusCode() {
@@ -150,28 +433,212 @@ public class Machine implements IMachine {
         stop = false;
         statusCode = STATUS_OK;
         statusMsg = "";
+        instructionCount = 0;
         processor.init(this);
-        proceed();
-        while ((!stop) && (!processor.hasReachedEnd())) {
-            consumeTime(1000);
+        if (undoJournal != null) {
+            undoJournal.clear();
+        }
+        loopDetected = false;
+        loopEntryAddress = 0;
+        loopPeriod = 0;
+        if (cycleDetector != null) {
+            cycleDetector.reset(this);
+            cycleBytesRead = ioPorts.getBytesRead();
+        }
+        skipBreakpoint = false;
+        if (turbo && !stepByStep) {
+            runTurbo();
+        } else {
+            proceedUnlessBreakpoint();
         }
+        while ((!stop) && (!processor.hasReachedEnd()) && (!checkInstructionLimit())) {
+            if (stepByStep) {
+                waitForNextStep();
+            } else if (turbo) {
+                runTurbo();
+            } else {
+                consumeTime(sleepTime);
+                if ((!stop) && (!stepByStep)) {
+                    proceedUnlessBreakpoint();
+                }
+            }
+        }
+        ioPorts.flush();
+        flushChanges();
     }
 
-    public void notifyObserver(Object notificationData) {
-        if(!stepByStep){
-            if (notificationData instanceof ProcessorNotificationData) {
-                Object data = ((ProcessorNotificationData) notificationData).getData();
-                if ((data instanceof IBitPattern) && (!stop) && (!processor.hasReachedEnd())) {
-                    consumeTime(sleepTime);
-                    proceed();
+    private void runTurbo() {
+        if (processor instanceof FastProcessor) {
+            FastProcessor fastProcessor = (FastProcessor) processor;
+            long limit = (instructionLimit > 0) ? instructionLimit : Long.MAX_VALUE;
+            int status = FastProcessor.STEP_OK;
+            paused = false;
+            while ((!stop) && (!loopDetected) && (!paused) && (status == FastProcessor.STEP_OK) && (instructionCount < limit)) {
+                long slice = Math.min(TURBO_SLICE, limit - instructionCount);
+                if ((cycleDetector == null) && (!breakpoints.isActive())) {
+                    status = fastProcessor.run(slice);
+                } else {
+                    status = runChecked(fastProcessor, slice);
+                }
+                instructionCount = fastProcessor.getInstructionCount();
+            }
+            fastProcessor.publish();
+            if (paused) {
+                pause();
+            } else if (loopDetected) {
+                stopOnInfiniteLoop();
+            } else if (status == FastProcessor.STEP_HALT) {
+                processor.halt();
+            } else if (status != FastProcessor.STEP_OK) {
+                Exception e = fastProcessor.getLastError();
+                stop = true;
+                statusCode = STATUS_UNKNOWN_INSTRUCTION;
+                statusMsg = e.getMessage();
+                processor.notifyObservers(new ProcessorNotificationData(e));
+            } else {
+                checkInstructionLimit();
+            }
+        } else {
+            // the changes are still collected by the event bus, but only flushed when the run stops
+            processor.setStepNotifications(false);
+            deferChanges = true;
+            try {
+                while ((!stop) && (!processor.hasReachedEnd()) && (!stepByStep) && (!checkInstructionLimit())) {
+                    proceedUnlessBreakpoint();
                 }
+            } finally {
+                deferChanges = false;
+                processor.setStepNotifications(true);
+            }
+        }
+    }
+
+    /**
+     * Executes instructions one at a time, checking for infinite loops,
+     * breakpoints and watchpoints after each one. Sets paused when a
+     * breakpoint or watchpoint is hit.
+     */
+    private int runChecked(FastProcessor fastProcessor, long maxInstructions) {
+        boolean checkBreakpoints = breakpoints.isActive();
+        int status = FastProcessor.STEP_OK;
+        for (long i = 0; (i < maxInstructions) && (status == FastProcessor.STEP_OK); i++) {
+            int pc = fastProcessor.getProgramCounterValue();
+            if (checkBreakpoints && breakpoints.breaksAt(pc) && (!skipBreakpoint)) {
+                skipBreakpoint = true;
+                paused = true;
+                break;
+            }
+            skipBreakpoint = false;
+            int word = (fastProcessor.getMemoryValue(pc) << 8) | fastProcessor.getMemoryValue(pc + 1);
+            if (cycleDetector == null) {
+                status = fastProcessor.step();
+                if (checkBreakpoints && (status == FastProcessor.STEP_OK) && breakpoints.watches(word)) {
+                    paused = true;
+                    break;
+                }
+                continue;
+            }
+            int destination = destinationOf(word);
+            int index = UndoJournal.getIndex(destination);
+            int kind = UndoJournal.getKind(destination);
+            if (kind == UndoJournal.KIND_REGISTER) {
+                int oldValue = fastProcessor.getRegisterValue(index);
+                status = fastProcessor.step();
+                cycleDetector.registerWritten(index, oldValue, fastProcessor.getRegisterValue(index));
+            } else if (kind == UndoJournal.KIND_MEMORY) {
+                int oldValue = fastProcessor.getMemoryValue(index);
+                status = fastProcessor.step();
+                cycleDetector.memoryWritten(index, oldValue, fastProcessor.getMemoryValue(index));
+            } else {
+                status = fastProcessor.step();
+            }
+            if ((status == FastProcessor.STEP_OK) && checkCycle(fastProcessor.getProgramCounterValue())) {
+                loopDetected = true;
+                break;
             }
+            if (checkBreakpoints && (status == FastProcessor.STEP_OK) && breakpoints.watches(word)) {
+                paused = true;
+                break;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Executes the next instruction, unless a breakpoint is set at its
+     * address, and pauses if it accessed a watched memory cell or register.
+     */
+    private void proceedUnlessBreakpoint() {
+        if (!breakpoints.isActive()) {
+            proceed();
+            return;
+        }
+        int pc = processor.getProgramCounter().getIndex();
+        if (breakpoints.breaksAt(pc) && (!skipBreakpoint)) {
+            skipBreakpoint = true;
+            pause();
+            return;
+        }
+        int cells = memory.getNumberOfCells();
+        int word = (memory.getValue(pc) << 8) | memory.getValue((pc + 1) % cells);
+        int wideAddress = profile.isExtended() ? ((memory.getValue((pc + 2) % cells) << 8) | memory.getValue((pc + 3) % cells)) % cells : -1;
+        proceed();
+        if ((!stop) && (!processor.hasReachedEnd()) && (statusCode == STATUS_OK) && breakpoints.watches(word, wideAddress)) {
+            pause();
+        }
+    }
+
+    private void pause() {
+        paused = false;
+        synchronized (stepLock) {
+            stepByStep = true;
+        }
+        flushChanges();
+        processor.notifyObservers(new ProcessorNotificationData("pause"));
+    }
+
+    private void stopOnInfiniteLoop() {
+        loopPeriod = cycleDetector.getPeriod();
+        loopEntryAddress = cycleDetector.findEntryAddress();
+        processor.halt();
+        statusCode = STATUS_INFINITE_LOOP;
+        if (loopEntryAddress == CycleDetector.ENTRY_UNKNOWN) {
+            statusMsg = "Infinite loop detected: the instructions repeat every " + loopPeriod + " steps";
+        } else {
+            statusMsg = "Infinite loop detected: the instructions starting at 0x" + BitPatternUtils.toHexString(loopEntryAddress, 2).toUpperCase() + " repeat every " + loopPeriod + " steps";
         }
     }
 
+    private boolean checkInstructionLimit() {
+        if ((instructionLimit > 0) && (instructionCount >= instructionLimit) && (!stop) && (!processor.hasReachedEnd())) {
+            processor.halt();
+            statusCode = STATUS_INSTRUCTION_LIMIT_REACHED;
+            statusMsg = "Instruction limit reached: " + instructionLimit;
+            return true;
+        }
+        return false;
+    }
+
+    public void notifyObserver(Object notificationData) {
+        // execution is driven by the loop in run()
+    }
+
     private void proceed() {
+        skipBreakpoint = false;
+        int undoEntry = ((undoJournal != null) || (cycleDetector != null)) ? createUndoEntry() : 0;
         try {
+            instructionCount++;
             processor.execNext();
+            if (undoJournal != null) {
+                undoJournal.push(undoEntry);
+            }
+            if ((cycleDetector != null) && (!processor.hasReachedEnd()) && detectCycle(undoEntry)) {
+                loopDetected = true;
+                stopOnInfiniteLoop();
+            }
+            if ((eventBus != null) && (!deferChanges)) {
+                eventBus.stepCompleted();
+            }
         } catch (MalformedProcessorInstructionException mpie) {
             stop = true;
             statusCode = STATUS_UNKNOWN_INSTRUCTION;
@@ -183,10 +650,93 @@ public class Machine implements IMachine {
         }
     }
 
+    private int createUndoEntry() {
+        int pc = processor.getProgramCounter().getIndex();
+        int word = (memory.getValue(pc) << 8) | memory.getValue((pc + 1) % memory.getNumberOfCells());
+        int destination = destinationOf(word);
+        int kind = UndoJournal.getKind(destination);
+        int index = UndoJournal.getIndex(destination);
+        return UndoJournal.encode(pc, kind, index, readValue(kind, index));
+    }
+
+    /**
+     * Returns the kind and index of the register or memory cell an
+     * instruction writes, encoded like an UndoJournal entry.
+     */
+    private static int destinationOf(int word) {
+        switch (word >>> 12) {
+            case 0x3:
+                return UndoJournal.encode(0, UndoJournal.KIND_MEMORY, word & 0xFF, 0);
+            case 0x4:
+                return UndoJournal.encode(0, UndoJournal.KIND_REGISTER, word & 0xF, 0);
+            case 0x1:
+            case 0x2:
+            case 0x5:
+            case 0x6:
+            case 0x7:
+            case 0x8:
+            case 0x9:
+            case 0xA:
+                return UndoJournal.encode(0, UndoJournal.KIND_REGISTER, (word >>> 8) & 0xF, 0);
+            default:
+                return UndoJournal.encode(0, UndoJournal.KIND_NONE, 0, 0);
+        }
+    }
+
+    private int readValue(int kind, int index) {
+        if (kind == UndoJournal.KIND_REGISTER) {
+            return processor.getRegisterValue(index);
+        } else if (kind == UndoJournal.KIND_MEMORY) {
+            return memory.getValue(index);
+        }
+        return 0;
+    }
+
+    private boolean detectCycle(int undoEntry) {
+        int kind = UndoJournal.getKind(undoEntry);
+        int index = UndoJournal.getIndex(undoEntry);
+        if (kind == UndoJournal.KIND_REGISTER) {
+            cycleDetector.registerWritten(index, UndoJournal.getOldValue(undoEntry), readValue(kind, index));
+        } else if (kind == UndoJournal.KIND_MEMORY) {
+            cycleDetector.memoryWritten(index, UndoJournal.getOldValue(undoEntry), readValue(kind, index));
+        }
+        return checkCycle(processor.getProgramCounter().getIndex());
+    }
+
+    private boolean checkCycle(int programCounter) {
+        // snapshots do not capture the input, so the search starts over after every read
+        long bytesRead = ioPorts.getBytesRead();
+        if (bytesRead != cycleBytesRead) {
+            cycleBytesRead = bytesRead;
+            cycleDetector.reset(this);
+            return false;
+        }
+        return cycleDetector.check(this, programCounter);
+    }
+
     private void consumeTime(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException ie) {
+        if (millis <= 0) {
+            return;
+        }
+        synchronized (stepLock) {
+            if (!stop) {
+                try {
+                    stepLock.wait(millis);
+                } catch (InterruptedException ie) {
+                }
+            }
+        }
+    }
+
+    private void waitForNextStep() {
+        synchronized (stepLock) {
+            while ((!stop) && (!processor.hasReachedEnd()) && stepByStep) {
+                try {
+                    stepLock.wait();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
         }
     }
 
@@ -203,7 +753,8 @@ public class Machine implements IMachine {
                     if (data instanceof IBitPattern) {
                         //System.out.println("Command executed: " + ((IBitPattern) data).toHexString());
                         try {
-                            IBitPattern inst = new BitPattern(16,((IBitPattern) data).toBinaryString().substring(8));
+                            IBitPattern inst = new BitPattern(16);
+                            inst.setBits(((IBitPattern) data).getUnsigned());
                             System.out.println("Command executed: " + ProcessorUtils.instructionToString(inst));
                         } catch (MalformedProcessorInstructionException mpie) {
                         }
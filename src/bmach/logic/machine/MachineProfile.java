@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+import bmach.logic.memory.DirectMemory;
+import bmach.logic.memory.IMainMemory;
+import bmach.logic.memory.MainMemory;
+import bmach.logic.memory.PagedMemory;
+
+/**
+ * The size and kind of a machine's memory. The standard profile has the 256
+ * cells of the Brookshear machine. Extended profiles have more, up to 64 KiB,
+ * kept in a PagedMemory, and enable the wide LOAD (0xD), STORE (0xE) and
+ * JUMP (0xF) instructions, whose operand is a 16-bit address held in the
+ * word that follows them:
+ *
+ *   DR00 AAAA   load register R with the contents of cell AAAA
+ *   ER00 AAAA   store register R in cell AAAA
+ *   FR00 AAAA   jump to AAAA if register R equals register 0
+ *
+ * Off-heap profiles keep the memory in a DirectMemory instead, whose 256
+ * cells take 256 bytes outside the heap rather than about 35 KB of cell
+ * objects on it; use them when many machines are created or kept alive at
+ * once, as a MachinePool does.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MachineProfile {
+
+    public final static MachineProfile STANDARD;
+    public final static MachineProfile EXTENDED;
+    public final static MachineProfile STANDARD_OFF_HEAP;
+
+    static {
+        STANDARD = new MachineProfile(PagedMemory.PAGE_SIZE);
+        EXTENDED = new MachineProfile(PagedMemory.MAX_SIZE);
+        STANDARD_OFF_HEAP = new MachineProfile(PagedMemory.PAGE_SIZE, true);
+    }
+    private final int memorySize;
+    private final boolean offHeap;
+
+    /**
+     * Creates a profile.
+     * @param memorySize the number of memory cells, a multiple of 256 up to 65536
+     */
+    public MachineProfile(int memorySize) {
+        this(memorySize, false);
+    }
+
+    /**
+     * Creates a profile.
+     * @param memorySize the number of memory cells, a multiple of 256 up to 65536
+     * @param offHeap true to keep the memory in a direct buffer
+     */
+    public MachineProfile(int memorySize, boolean offHeap) {
+        if ((memorySize < PagedMemory.PAGE_SIZE) || (memorySize > PagedMemory.MAX_SIZE) || (memorySize % PagedMemory.PAGE_SIZE != 0)) {
+            throw new IllegalArgumentException("Invalid memory size: " + memorySize + " - it must be a multiple of " + PagedMemory.PAGE_SIZE + " up to " + PagedMemory.MAX_SIZE);
+        }
+        this.memorySize = memorySize;
+        this.offHeap = offHeap;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    public int getNumberOfPages() {
+        return memorySize / PagedMemory.PAGE_SIZE;
+    }
+
+    /**
+     * Checks whether this profile has more memory than the standard one and
+     * the wide instructions.
+     * @return true for an extended profile
+     */
+    public boolean isExtended() {
+        return memorySize > PagedMemory.PAGE_SIZE;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public IMainMemory createMemory() {
+        if (offHeap) {
+            return new DirectMemory(memorySize);
+        }
+        return isExtended() ? new PagedMemory(memorySize) : new MainMemory();
+    }
+}
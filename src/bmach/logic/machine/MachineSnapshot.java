@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+import bmach.logic.memory.IMainMemory;
+import bmach.logic.memory.IMemoryCell;
+import bmach.logic.processor.FastProcessor;
+import bmach.logic.processor.IProcessor;
+import bmach.logic.registers.IRegister;
+
+/**
+ * The architectural state of a machine - the 256 memory cells, the 16
+ * registers and the program counter - stored in a single 273-byte array.
+ *
+ * Bytes 0x000-0x0FF hold the memory, bytes 0x100-0x10F the registers and
+ * byte 0x110 the program counter. With a FastProcessor, capture() and
+ * restore() are bulk array copies; with other processors they go through
+ * the IMemoryCell and IRegister objects.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MachineSnapshot {
+
+    public final static int SIZE;
+    public final static int MEMORY_OFFSET;
+    public final static int REGISTERS_OFFSET;
+    public final static int PROGRAM_COUNTER_OFFSET;
+    private final static int NUMBER_OF_CELLS;
+    private final static int NUMBER_OF_REGISTERS;
+    private final static long FNV_OFFSET_BASIS;
+    private final static long FNV_PRIME;
+
+    static {
+        NUMBER_OF_CELLS = 256;
+        NUMBER_OF_REGISTERS = 16;
+        MEMORY_OFFSET = 0;
+        REGISTERS_OFFSET = MEMORY_OFFSET + NUMBER_OF_CELLS;
+        PROGRAM_COUNTER_OFFSET = REGISTERS_OFFSET + NUMBER_OF_REGISTERS;
+        SIZE = PROGRAM_COUNTER_OFFSET + 1;
+        FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        FNV_PRIME = 0x100000001b3L;
+    }
+    private final byte[] state;
+
+    /**
+     * Creates an all-zero snapshot.
+     */
+    public MachineSnapshot() {
+        this.state = new byte[SIZE];
+    }
+
+    /**
+     * Creates a snapshot from the contents of an array laid out as described
+     * above.
+     * @param state an array of at least SIZE bytes - it is copied
+     */
+    public MachineSnapshot(byte[] state) {
+        this();
+        System.arraycopy(state, 0, this.state, 0, SIZE);
+    }
+
+    /**
+     * Creates a snapshot holding the current state of machine.
+     * @param machine the machine to capture
+     * @return a new snapshot
+     */
+    public static MachineSnapshot of(IMachine machine) {
+        MachineSnapshot snapshot = new MachineSnapshot();
+        snapshot.capture(machine);
+        return snapshot;
+    }
+
+    /**
+     * Overwrites this snapshot with the current state of machine, so that a
+     * single snapshot can be reused without allocating.
+     * @param machine the machine to capture
+     */
+    public void capture(IMachine machine) {
+        IProcessor processor = machine.getProcessor();
+        if (processor instanceof FastProcessor) {
+            FastProcessor fastProcessor = (FastProcessor) processor;
+            fastProcessor.copyMemory(state, MEMORY_OFFSET);
+            fastProcessor.copyRegisters(state, REGISTERS_OFFSET);
+            state[PROGRAM_COUNTER_OFFSET] = (byte) fastProcessor.getProgramCounterValue();
+        } else {
+            IMainMemory memory = machine.getMemory();
+            int cells = Math.min(NUMBER_OF_CELLS, memory.getNumberOfCells());
+            for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+                state[MEMORY_OFFSET + i] = (i < cells) ? (byte) memory.getValue(i) : 0;
+            }
+            for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+                state[REGISTERS_OFFSET + i] = (byte) processor.getRegisterValue(i);
+            }
+            state[PROGRAM_COUNTER_OFFSET] = (byte) processor.getProgramCounter().getIndex();
+        }
+    }
+
+    /**
+     * Copies this snapshot back into machine. Only the memory cells whose
+     * value differs are written, and observers are notified as if the state
+     * had been edited by hand. A halted machine can be run again after its
+     * state is restored, and the instructions recorded for stepBack() are
+     * forgotten.
+     * @param machine the machine to restore
+     */
+    public void restore(IMachine machine) {
+        IProcessor processor = machine.getProcessor();
+        if (processor instanceof FastProcessor) {
+            FastProcessor fastProcessor = (FastProcessor) processor;
+            fastProcessor.restoreMemory(state, MEMORY_OFFSET);
+            fastProcessor.restoreRegisters(state, REGISTERS_OFFSET);
+            fastProcessor.setProgramCounterValue(state[PROGRAM_COUNTER_OFFSET] & 0xFF);
+            fastProcessor.publish();
+        } else {
+            IMainMemory memory = machine.getMemory();
+            int cells = Math.min(NUMBER_OF_CELLS, memory.getNumberOfCells());
+            for (int i = 0; i < cells; i++) {
+                IMemoryCell cell = memory.get(i);
+                int value = state[MEMORY_OFFSET + i] & 0xFF;
+                if (cell.getUnsigned() != value) {
+                    cell.setBits(value);
+                }
+            }
+            for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+                IRegister register = processor.getRegister(i);
+                int value = state[REGISTERS_OFFSET + i] & 0xFF;
+                if (register.getUnsigned() != value) {
+                    register.setBits(value);
+                }
+            }
+            processor.setProgramCounterValue(state[PROGRAM_COUNTER_OFFSET] & 0xFF);
+        }
+        machine.clearUndoHistory();
+    }
+
+    public byte getMemory(int address) {
+        return state[MEMORY_OFFSET + address];
+    }
+
+    public byte getRegister(int registerIndex) {
+        return state[REGISTERS_OFFSET + registerIndex];
+    }
+
+    public int getProgramCounter() {
+        return state[PROGRAM_COUNTER_OFFSET] & 0xFF;
+    }
+
+    /**
+     * Copies the snapshot into dest.
+     * @param dest the destination array
+     * @param offset the index in dest where the first byte is stored
+     */
+    public void copyTo(byte[] dest, int offset) {
+        System.arraycopy(state, 0, dest, offset, SIZE);
+    }
+
+    public byte[] toByteArray() {
+        byte[] result = new byte[SIZE];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the snapshot's bytes. The value
+     * depends only on the state, so it is the same across runs and JVMs and
+     * can be stored for deduplication.
+     * @return the hash of the state
+     */
+    public long longHash() {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < SIZE; i++) {
+            hash ^= state[i] & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = longHash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MachineSnapshot)) {
+            return false;
+        }
+        byte[] other = ((MachineSnapshot) obj).state;
+        for (int i = 0; i < SIZE; i++) {
+            if (state[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine;
+
+/**
+ * A bounded ring buffer recording what each executed instruction overwrote,
+ * so that instructions can be undone in reverse order.
+ *
+ * Every instruction writes at most one register or memory cell, so an entry
+ * - the old program counter, the kind and index of the overwritten location
+ * and its old value - is packed into a single int. When the buffer is full
+ * the oldest entries are overwritten. The buffer is allocated when the first
+ * entry is added, so machines that never record one do not pay for it.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class UndoJournal {
+
+    public final static int KIND_NONE;
+    public final static int KIND_REGISTER;
+    public final static int KIND_MEMORY;
+
+    static {
+        KIND_NONE = 0;
+        KIND_REGISTER = 1;
+        KIND_MEMORY = 2;
+    }
+    private final int capacity;
+    private int[] entries;
+    private int head;
+    private int size;
+
+    /**
+     * Creates an empty journal.
+     * @param capacity the maximum number of instructions that can be undone
+     */
+    public UndoJournal(int capacity) {
+        this.capacity = capacity;
+        this.entries = null;
+        this.head = 0;
+        this.size = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Packs the state an instruction is about to overwrite into an entry.
+     * @param programCounter the address of the instruction
+     * @param kind KIND_REGISTER, KIND_MEMORY or KIND_NONE if the instruction writes neither
+     * @param index the index of the register or the address of the memory cell
+     * @param oldValue the current value of the register or memory cell
+     * @return the entry
+     */
+    public static int encode(int programCounter, int kind, int index, int oldValue) {
+        return (kind << 24) | ((oldValue & 0xFF) << 16) | ((index & 0xFF) << 8) | (programCounter & 0xFF);
+    }
+
+    /**
+     * Adds an entry created with encode(), overwriting the oldest one if the
+     * journal is full.
+     * @param entry the entry to add
+     */
+    public void push(int entry) {
+        if (entries == null) {
+            entries = new int[capacity];
+        }
+        entries[head] = entry;
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes the most recent entry; its fields are read with getKind(),
+     * getIndex(), getOldValue() and getProgramCounter().
+     * @return the most recent entry
+     */
+    public int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("The undo journal is empty");
+        }
+        head = (head + capacity - 1) % capacity;
+        size--;
+        return entries[head];
+    }
+
+    public static int getProgramCounter(int entry) {
+        return entry & 0xFF;
+    }
+
+    public static int getIndex(int entry) {
+        return (entry >>> 8) & 0xFF;
+    }
+
+    public static int getOldValue(int entry) {
+        return (entry >>> 16) & 0xFF;
+    }
+
+    public static int getKind(int entry) {
+        return entry >>> 24;
+    }
+}
@@ -23,4 +23,11 @@ package bmach.logic.machine.parser;
  */
 public interface IInstructionParser {
     public String parseNextInstruction() throws MalformedInstructionException;
+
+    /**
+     * Returns the source line of the instruction last returned by
+     * parseNextInstruction().
+     * @return the line number, starting at 1
+     */
+    public int getLineNumber();
 }
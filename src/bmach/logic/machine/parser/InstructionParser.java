@@ -43,6 +43,20 @@ public class InstructionParser implements IInstructionParser {
         r = new LineNumberReader(reader);
     }
 
+    /**
+     * Creates a parser that, if wideInstructions is true, also accepts the
+     * wide instructions of extended machine profiles and the 16-bit
+     * addresses that follow them, i.e. any hexadecimal word.
+     * @param reader the program's source
+     * @param wideInstructions true to accept any hexadecimal word
+     */
+    public InstructionParser(Reader reader, boolean wideInstructions) {
+        this(reader);
+        if (wideInstructions) {
+            hexInstructionPattern = "(\\s*)0x[0-9a-fA-F]{4}(\\s*//(.*))?";
+        }
+    }
+
     public String parseNextInstruction() throws MalformedInstructionException {
         try {
             String line;
@@ -62,4 +76,8 @@ public class InstructionParser implements IInstructionParser {
             return null;
         }
     }
+
+    public int getLineNumber() {
+        return r.getLineNumber();
+    }
 }
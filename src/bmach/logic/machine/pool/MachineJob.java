@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine.pool;
+
+import bmach.logic.machine.IOPorts;
+import bmach.logic.machine.parser.IInstructionParser;
+import bmach.logic.machine.parser.InstructionParser;
+import bmach.logic.machine.parser.MalformedInstructionException;
+import java.io.StringReader;
+
+/**
+ * A program to be executed by a MachinePool, together with the initial
+ * contents of the memory and the maximum number of instructions it may
+ * execute. The program is parsed once, when the job is created. A job may
+ * also set the machine's I/O ports and the input read from the input port;
+ * the bytes written to the output port are returned in its MachineResult.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MachineJob {
+
+    private final static int MEMORY_SIZE = 256;
+    private byte[] image;
+    private long instructionBudget;
+    private int inputPort;
+    private int outputPort;
+    private byte[] input;
+
+    /**
+     * Creates a job from the memory image the machine will start with.
+     * @param image the initial memory contents - at most 256 bytes, missing bytes are 0
+     * @param instructionBudget the maximum number of instructions to execute, or 0 for no limit
+     */
+    public MachineJob(byte[] image, long instructionBudget) {
+        this.image = new byte[MEMORY_SIZE];
+        System.arraycopy(image, 0, this.image, 0, Math.min(image.length, MEMORY_SIZE));
+        this.instructionBudget = instructionBudget;
+        this.inputPort = IOPorts.NONE;
+        this.outputPort = IOPorts.NONE;
+        this.input = new byte[0];
+    }
+
+    /**
+     * Creates a job that loads a program in BMach machine language at
+     * address 0x00 on top of the given initial memory contents.
+     * @param program the program's source
+     * @param initialMemory the initial memory contents, or null for an empty memory
+     * @param instructionBudget the maximum number of instructions to execute, or 0 for no limit
+     * @throws MalformedInstructionException if the program contains a malformed instruction or does not fit in memory
+     */
+    public MachineJob(String program, byte[] initialMemory, long instructionBudget) throws MalformedInstructionException {
+        this(initialMemory == null ? new byte[0] : initialMemory, instructionBudget);
+        IInstructionParser p = new InstructionParser(new StringReader(program));
+        String inst;
+        int i = 0;
+        while ((inst = p.parseNextInstruction()) != null) {
+            if (i >= MEMORY_SIZE) {
+                throw new MalformedInstructionException(p.getLineNumber(), inst);
+            }
+            int word = Integer.parseInt(inst, 2);
+            image[i++] = (byte) (word >>> 8);
+            image[i++] = (byte) word;
+        }
+    }
+
+    public byte[] getImage() {
+        return image;
+    }
+
+    public long getInstructionBudget() {
+        return instructionBudget;
+    }
+
+    /**
+     * Sets the addresses of the machine's I/O ports while the job runs.
+     * @param inputPort the address of the input port, or IOPorts.NONE
+     * @param outputPort the address of the output port, or IOPorts.NONE
+     */
+    public void setPorts(int inputPort, int outputPort) {
+        this.inputPort = inputPort;
+        this.outputPort = outputPort;
+    }
+
+    public int getInputPort() {
+        return inputPort;
+    }
+
+    public int getOutputPort() {
+        return outputPort;
+    }
+
+    /**
+     * Sets the bytes read from the input port.
+     * @param input the input
+     */
+    public void setInput(byte[] input) {
+        this.input = new byte[input.length];
+        System.arraycopy(input, 0, this.input, 0, input.length);
+    }
+
+    public byte[] getInput() {
+        return input;
+    }
+}
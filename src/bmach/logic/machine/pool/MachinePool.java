@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine.pool;
+
+import bmach.logic.machine.IOPorts;
+import bmach.logic.machine.Machine;
+import bmach.logic.machine.MachineProfile;
+import bmach.logic.memory.IMainMemory;
+import bmach.logic.processor.Coverage;
+import bmach.logic.processor.FastProcessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes many independent MachineJobs in parallel on a fixed number of
+ * threads. Machines are created on demand, run in turbo mode on a
+ * FastProcessor and are recycled for subsequent jobs instead of being
+ * rebuilt. Their memory is a DirectMemory, so each machine allocates about
+ * 13 KB when it is created rather than about 88 KB with a MainMemory, and
+ * running a job costs the same with either.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MachinePool {
+
+    private ExecutorService executor;
+    private ConcurrentLinkedQueue<Machine> idleMachines;
+    private int executionMode;
+    private volatile boolean coverageEnabled;
+
+    public MachinePool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MachinePool(int threads) {
+        this(threads, FastProcessor.MODE_COMPILED);
+    }
+
+    /**
+     * Creates a pool.
+     * @param threads the number of jobs that may run at the same time
+     * @param executionMode the FastProcessor.MODE_* constant the machines execute programs with
+     */
+    public MachinePool(int threads, int executionMode) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.idleMachines = new ConcurrentLinkedQueue<Machine>();
+        this.executionMode = executionMode;
+        this.coverageEnabled = false;
+    }
+
+    /**
+     * Sets whether the jobs executed from now on record their coverage. The
+     * coverage of each job is returned in its MachineResult and the
+     * coverages of a batch of jobs can be combined with Coverage.merge().
+     * @param coverageEnabled true to record coverage
+     */
+    public void setCoverageEnabled(boolean coverageEnabled) {
+        this.coverageEnabled = coverageEnabled;
+    }
+
+    public boolean isCoverageEnabled() {
+        return coverageEnabled;
+    }
+
+    /**
+     * Schedules a job for execution.
+     * @param job the job
+     * @return a Future holding the job's result
+     */
+    public Future<MachineResult> submit(final MachineJob job) {
+        return executor.submit(new Callable<MachineResult>() {
+
+            public MachineResult call() {
+                return execute(job);
+            }
+        });
+    }
+
+    /**
+     * Schedules a number of jobs for execution.
+     * @param jobs the jobs
+     * @return the Futures holding the jobs' results, in the order of jobs
+     */
+    public List<Future<MachineResult>> submitAll(Collection<MachineJob> jobs) {
+        List<Future<MachineResult>> results = new ArrayList<Future<MachineResult>>(jobs.size());
+        for (Iterator<MachineJob> it = jobs.iterator(); it.hasNext();) {
+            results.add(submit(it.next()));
+        }
+        return results;
+    }
+
+    /**
+     * Executes a job on the calling thread, using one of the pool's machines.
+     * @param job the job
+     * @return the job's result
+     */
+    public MachineResult execute(MachineJob job) {
+        Machine machine = idleMachines.poll();
+        if (machine == null) {
+            machine = createMachine();
+        }
+        try {
+            return run(machine, job);
+        } finally {
+            idleMachines.offer(machine);
+        }
+    }
+
+    private Machine createMachine() {
+        FastProcessor processor = new FastProcessor();
+        processor.setExecutionMode(executionMode);
+        Machine machine = new Machine(processor, MachineProfile.STANDARD_OFF_HEAP);
+        machine.setTurbo(true);
+        machine.setStepByStep(false);
+        machine.setUndoCapacity(0);
+        return machine;
+    }
+
+    private MachineResult run(Machine machine, MachineJob job) {
+        FastProcessor processor = (FastProcessor) machine.getProcessor();
+        IMainMemory memory = machine.getMemory();
+        byte[] image = job.getImage();
+        for (int i = 0; i < image.length; i++) {
+            memory.setValue(i, image[i]);
+        }
+        IOPorts ports = machine.getIOPorts();
+        ports.setInputPort(job.getInputPort());
+        ports.setOutputPort(job.getOutputPort());
+        ports.clearInput();
+        ports.clearOutput();
+        ports.provideInput(job.getInput());
+        Coverage coverage = coverageEnabled ? new Coverage() : null;
+        processor.setCoverage(coverage);
+        machine.setInstructionLimit(job.getInstructionBudget());
+        machine.run();
+        processor.setCoverage(null);
+        byte[] output = ports.getOutput();
+        // the machine is reused, so nothing of this job's I/O may be left for the next one
+        ports.setInputPort(IOPorts.NONE);
+        ports.setOutputPort(IOPorts.NONE);
+        ports.clearInput();
+        ports.clearOutput();
+
+        byte[] registers = new byte[processor.getNumberOfRegisters()];
+        byte[] finalMemory = new byte[image.length];
+        processor.copyRegisters(registers, 0);
+        processor.copyMemory(finalMemory, 0);
+        return new MachineResult(registers, finalMemory, processor.getProgramCounterValue(), machine.getStatusCode(), machine.getStatusMsg(), processor.hasReachedEnd(), machine.getInstructionCount(), coverage, output);
+    }
+
+    /**
+     * Stops accepting new jobs; jobs already submitted are still executed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
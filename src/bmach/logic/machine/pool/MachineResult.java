@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.machine.pool;
+
+import bmach.logic.processor.Coverage;
+
+/**
+ * The final state of a machine after executing a MachineJob.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MachineResult {
+
+    private byte[] registers;
+    private byte[] memory;
+    private int programCounter;
+    private int statusCode;
+    private String statusMsg;
+    private boolean halted;
+    private long instructionCount;
+    private Coverage coverage;
+    private byte[] output;
+
+    public MachineResult(byte[] registers, byte[] memory, int programCounter, int statusCode, String statusMsg, boolean halted, long instructionCount) {
+        this(registers, memory, programCounter, statusCode, statusMsg, halted, instructionCount, null);
+    }
+
+    public MachineResult(byte[] registers, byte[] memory, int programCounter, int statusCode, String statusMsg, boolean halted, long instructionCount, Coverage coverage) {
+        this(registers, memory, programCounter, statusCode, statusMsg, halted, instructionCount, coverage, new byte[0]);
+    }
+
+    public MachineResult(byte[] registers, byte[] memory, int programCounter, int statusCode, String statusMsg, boolean halted, long instructionCount, Coverage coverage, byte[] output) {
+        this.registers = registers;
+        this.memory = memory;
+        this.programCounter = programCounter;
+        this.statusCode = statusCode;
+        this.statusMsg = statusMsg;
+        this.halted = halted;
+        this.instructionCount = instructionCount;
+        this.coverage = coverage;
+        this.output = output;
+    }
+
+    public byte[] getRegisters() {
+        return registers;
+    }
+
+    public byte[] getMemory() {
+        return memory;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    /**
+     * Returns one of Machine's STATUS_* constants.
+     * @return the status the machine stopped with
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMsg() {
+        return statusMsg;
+    }
+
+    /**
+     * Checks whether the program stopped by executing a HALT instruction.
+     * @return true if the program halted normally
+     */
+    public boolean hasHalted() {
+        return halted;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * Returns the addresses executed by the job.
+     * @return the job's coverage, or null if the pool did not record coverage
+     */
+    public Coverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Returns the bytes the job wrote to the output port.
+     * @return the job's output, empty if the job had no output port
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+}
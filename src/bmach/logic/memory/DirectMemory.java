@@ -0,0 +1,256 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.memory;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import util.binary.bitpattern.ByteBitPattern;
+import util.binary.bitpattern.IBitPattern;
+import util.patterns.observer.IObserver;
+import util.patterns.observer.ISubject;
+
+/**
+ * A memory whose contents are kept off the heap, in a direct ByteBuffer.
+ * Reading and writing cells through getValue() and setValue() allocates
+ * nothing; the IMemoryCell of a cell is a view of the buffer created the
+ * first time get() requests it, and the bit pattern returned by its
+ * getContent() is a copy of the cell's contents, refreshed on every call.
+ *
+ * Observers attached to the memory itself are notified of every write with
+ * a MemoryCellNotificationData that does not create the cell's view. The
+ * memory reuses a single notification for all its writes, so observers must
+ * not keep it after notifyObserver() returns.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class DirectMemory implements IMainMemory, ISubject {
+
+    /**
+     * The IMemoryCell view of one cell of the buffer.
+     */
+    private class CellView implements IMemoryCell {
+
+        private final int index;
+        private IMemoryAddress address;
+        private ByteBitPattern content;
+        private List<IObserver> observers;
+        private MemoryCellNotificationData notificationData;
+
+        public CellView(int index) {
+            this.index = index;
+            this.address = null;
+            this.content = null;
+            this.observers = null;
+            this.notificationData = null;
+        }
+
+        public IMemoryAddress getAddress() {
+            if (address == null) {
+                address = new MemoryAddress(index, addressLength);
+            }
+            return address;
+        }
+
+        /**
+         * Changes the address the cell reports, like MemoryCell does; the
+         * cell still holds the same byte of the buffer.
+         * @param address the new address
+         */
+        public void setAddress(IMemoryAddress address) {
+            this.address = address;
+            notifyChanged();
+        }
+
+        public IBitPattern getContent() {
+            if (content == null) {
+                content = new ByteBitPattern();
+            }
+            content.setBits(getValue(index));
+            return content;
+        }
+
+        public void setContent(IBitPattern content) {
+            if (content.length() == 8) {
+                setValue(index, content.getUnsigned());
+            } else {
+                throw new ArithmeticException("Cannot assign a bit pattern that is not 8 bits long to a byte.");
+            }
+        }
+
+        public void setContentValue(String value) {
+            ByteBitPattern content = new ByteBitPattern();
+            content.setValue(value);
+            setValue(index, content.getUnsigned());
+        }
+
+        public int getUnsigned() {
+            return getValue(index);
+        }
+
+        public int getSigned() {
+            return (byte) getValue(index);
+        }
+
+        public void setBits(int bits) {
+            setValue(index, bits);
+        }
+
+        public void copyFrom(IBitPattern value) {
+            if (value.length() != 8) {
+                throw new ArithmeticException("Cannot assign a bit pattern that is not 8 bits long to a byte.");
+            }
+            setValue(index, value.getUnsigned());
+        }
+
+        public void addObserver(IObserver observer) {
+            if (observers == null) {
+                observers = new ArrayList<IObserver>();
+            }
+            observers.add(observer);
+        }
+
+        public void removeObserver(IObserver observer) {
+            if (observers != null) {
+                observers.remove(observer);
+            }
+        }
+
+        public void notifyObservers(Object notificationData) {
+            if (observers != null) {
+                for (Iterator<IObserver> it = observers.iterator(); it.hasNext();) {
+                    IObserver iObserver = it.next();
+                    iObserver.notifyObserver(notificationData);
+                }
+            }
+        }
+
+        private void notifyChanged() {
+            if ((observers != null) && (!observers.isEmpty())) {
+                if (notificationData == null) {
+                    notificationData = new MemoryCellNotificationData(this);
+                }
+                notifyObservers(notificationData);
+            }
+        }
+    }
+    private final ByteBuffer buffer;
+    private final int addressLength;
+    private CellView[] views;
+    private List<IObserver> observers;
+    private MemoryCellNotificationData notificationData;
+
+    public DirectMemory() {
+        this(256);
+    }
+
+    /**
+     * Creates a memory.
+     * @param numberOfCells the number of cells, up to 65536
+     */
+    public DirectMemory(int numberOfCells) {
+        if ((numberOfCells <= 0) || (numberOfCells > 65536)) {
+            throw new IllegalArgumentException("Invalid memory size: " + numberOfCells);
+        }
+        this.buffer = ByteBuffer.allocateDirect(numberOfCells);
+        this.addressLength = (numberOfCells > 256) ? MemoryAddress.WIDE_LENGTH : 8;
+        this.views = null;
+        this.observers = new CopyOnWriteArrayList<IObserver>();
+        this.notificationData = null;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            setValue(i, 0);
+        }
+    }
+
+    public IMemoryCell get(IMemoryAddress address) {
+        return get(address.getUnsigned());
+    }
+
+    public IMemoryCell get(int index) {
+        if (views == null) {
+            views = new CellView[buffer.capacity()];
+        }
+        if (views[index] == null) {
+            views[index] = new CellView(index);
+        }
+        return views[index];
+    }
+
+    public int getValue(int index) {
+        return buffer.get(index) & 0xFF;
+    }
+
+    public void setValue(int index, int value) {
+        buffer.put(index, (byte) value);
+        if ((views != null) && (views[index] != null)) {
+            views[index].notifyChanged();
+        }
+        if (!observers.isEmpty()) {
+            if (notificationData == null) {
+                notificationData = new MemoryCellNotificationData(this, index);
+            } else {
+                notificationData.setIndex(index);
+            }
+            notifyObservers(notificationData);
+        }
+    }
+
+    public int getNumberOfCells() {
+        return buffer.capacity();
+    }
+
+    public void set(IMemoryAddress address, IBitPattern content) {
+        get(address).setContent(content);
+    }
+
+    public void printBinary(PrintStream out) {
+        ByteBitPattern content = new ByteBitPattern();
+        for (int i = 0; i < buffer.capacity(); i++) {
+            content.setBits(getValue(i));
+            out.println(String.format("Memory[%1$3d]: %2$s", i, content.toBinaryString()));
+        }
+    }
+
+    public void printHex(PrintStream out) {
+        ByteBitPattern content = new ByteBitPattern();
+        for (int i = 0; i < buffer.capacity(); i++) {
+            content.setBits(getValue(i));
+            out.println(String.format("Memory[%1$3d]: %2$s", i, content.toHexString()));
+        }
+    }
+
+    public void addObserver(IObserver observer) {
+        this.observers.add(observer);
+    }
+
+    public void removeObserver(IObserver observer) {
+        this.observers.remove(observer);
+    }
+
+    public void notifyObservers(Object notificationData) {
+        for (Iterator<IObserver> it = observers.iterator(); it.hasNext();) {
+            IObserver iObserver = it.next();
+            iObserver.notifyObserver(notificationData);
+        }
+    }
+}
@@ -28,6 +28,8 @@ public interface IMainMemory {
 
     public IMemoryCell get(IMemoryAddress address);
     public IMemoryCell get(int index);
+    public int getValue(int index);
+    public void setValue(int index, int value);
     public int getNumberOfCells();
     public void set(IMemoryAddress address, IBitPattern content);
     public void clear();
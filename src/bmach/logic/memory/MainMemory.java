@@ -17,8 +17,6 @@
 package bmach.logic.memory;
 
 import java.io.PrintStream;
-import java.util.HashMap;
-import java.util.Iterator;
 import util.binary.bitpattern.IBitPattern;
 
 /**
@@ -27,53 +25,59 @@ import util.binary.bitpattern.IBitPattern;
  */
 public class MainMemory implements IMainMemory {
 
-    private HashMap<IMemoryAddress, IMemoryCell> cells;
+    private IMemoryCell[] cells;
 
     public MainMemory() {
-        this.cells = new HashMap<IMemoryAddress, IMemoryCell>(256, 1.0f);
+        this.cells = new IMemoryCell[256];
         generateCells();
     }
 
     private void generateCells() {
-        for (int i = 0; i < 256; i++) {
+        for (int i = 0; i < cells.length; i++) {
             IMemoryAddress address = new MemoryAddress("0x" + Integer.toHexString(i));
-            cells.put(address, new MemoryCell(address));
+            cells[i] = new MemoryCell(address);
         }
     }
 
     public void clear() {
-        for (Iterator<IMemoryAddress> it = cells.keySet().iterator(); it.hasNext();) {
-            IMemoryAddress address = it.next();
-            IMemoryCell cell = cells.get(address);
-            cell.getContent().setValue("00000000");
+        for (int i = 0; i < cells.length; i++) {
+            cells[i].getContent().setBits(0);
         }
     }
 
     public IMemoryCell get(IMemoryAddress address) {
-        return this.cells.get(address);
+        return this.cells[address.getUnsigned()];
     }
 
     public IMemoryCell get(int index) {
-        return this.cells.get(new MemoryAddress("0x" + Integer.toHexString(index)));
+        return this.cells[index];
+    }
+
+    public int getValue(int index) {
+        return this.cells[index].getUnsigned();
+    }
+
+    public void setValue(int index, int value) {
+        this.cells[index].setBits(value);
     }
 
     public int getNumberOfCells() {
-        return this.cells.size();
+        return this.cells.length;
     }
 
     public void set(IMemoryAddress address, IBitPattern content) {
-        this.cells.get(address).setContent(content);
+        this.cells[address.getUnsigned()].setContent(content);
     }
 
     public void printBinary(PrintStream out) {
         for(int i=0; i<255; i++){
-            out.println(String.format("Memory[%1$3d]: %2$s",i,get(new MemoryAddress("0x"+Integer.toHexString(i))).getContent().toBinaryString()));
+            out.println(String.format("Memory[%1$3d]: %2$s",i,cells[i].getContent().toBinaryString()));
         }
     }
 
     public void printHex(PrintStream out) {
         for(int i=0; i<255; i++){
-            out.println(String.format("Memory[%1$3d]: %2$s",i,get(new MemoryAddress("0x"+Integer.toHexString(i))).getContent().toHexString()));
+            out.println(String.format("Memory[%1$3d]: %2$s",i,cells[i].getContent().toHexString()));
         }
     }
 
@@ -16,16 +16,34 @@
  */
 package bmach.logic.memory;
 
-import util.binary.bitpattern.ByteBitPattern;
+import util.binary.bitpattern.BitPattern;
 
 /**
+ * A memory address. Addresses are 8 bits long, except in memories larger
+ * than 256 cells, whose addresses are 16 bits long.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
-public class MemoryAddress extends ByteBitPattern implements IMemoryAddress {
+public class MemoryAddress extends BitPattern implements IMemoryAddress {
+
+    public final static int WIDE_LENGTH;
+
+    static {
+        WIDE_LENGTH = 16;
+    }
 
     public MemoryAddress(String address) {
-        super();
+        super(8);
         setValue(address);
     }
+
+    public MemoryAddress(int address) {
+        super(8);
+        setBits(address);
+    }
+
+    public MemoryAddress(int address, int length) {
+        super(length);
+        setBits(address);
+    }
 }
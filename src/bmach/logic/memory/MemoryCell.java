@@ -32,11 +32,13 @@ public class MemoryCell implements IMemoryCell {
     private IMemoryAddress address;
     private IBitPattern content;
     private List<IObserver> observers;
+    private MemoryCellNotificationData notificationData;
 
     public MemoryCell(IMemoryAddress address) {
         this.address = address;
         this.content = new ByteBitPattern();
         this.observers = new ArrayList<IObserver>();
+        this.notificationData = null;
     }
 
     public IMemoryAddress getAddress() {
@@ -45,7 +47,7 @@ public class MemoryCell implements IMemoryCell {
 
     public void setAddress(IMemoryAddress address) {
         this.address = address;
-        notifyObservers(new MemoryCellNotificationData(this));
+        notifyChanged();
     }
 
     public IBitPattern getContent() {
@@ -55,7 +57,7 @@ public class MemoryCell implements IMemoryCell {
     public void setContent(IBitPattern content) {
         if(content.length() == 8){
             this.content = content;
-            notifyObservers(new MemoryCellNotificationData(this));
+            notifyChanged();
         }else{
             throw new ArithmeticException("Cannot assign a bit pattern that is not 8 bits long to a byte.");
         }
@@ -63,7 +65,38 @@ public class MemoryCell implements IMemoryCell {
 
     public void setContentValue(String value) {
         this.content.setValue(value);
-        notifyObservers(new MemoryCellNotificationData(this));
+        notifyChanged();
+    }
+
+    public int getUnsigned() {
+        return this.content.getUnsigned();
+    }
+
+    public int getSigned() {
+        return this.content.getSigned();
+    }
+
+    public void setBits(int bits) {
+        this.content.setBits(bits);
+        notifyChanged();
+    }
+
+    public void copyFrom(IBitPattern value) {
+        this.content.copyFrom(value);
+        notifyChanged();
+    }
+
+    /**
+     * Notifies the observers, if there are any, with a notification that is
+     * created once and reused for every change.
+     */
+    private void notifyChanged() {
+        if (!observers.isEmpty()) {
+            if (notificationData == null) {
+                notificationData = new MemoryCellNotificationData(this);
+            }
+            notifyObservers(notificationData);
+        }
     }
 
     public void addObserver(IObserver observer) {
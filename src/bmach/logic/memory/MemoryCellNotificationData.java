@@ -23,12 +23,49 @@ package bmach.logic.memory;
 public class MemoryCellNotificationData {
 
     private IMemoryCell memoryCell;
+    private IMainMemory memory;
+    private int index;
 
     public MemoryCellNotificationData(IMemoryCell memoryCell) {
         this.memoryCell = memoryCell;
+        this.memory = null;
+        this.index = -1;
+    }
+
+    /**
+     * Creates a notification for the cell at index of memory, without
+     * requesting the cell itself unless getMemoryCell() is called.
+     * @param memory the memory
+     * @param index the cell's index
+     */
+    public MemoryCellNotificationData(IMainMemory memory, int index) {
+        this.memoryCell = null;
+        this.memory = memory;
+        this.index = index;
+    }
+
+    /**
+     * Points a notification created for a memory at another of its cells,
+     * so that the memory can reuse it for every write.
+     * @param index the cell's index
+     */
+    void setIndex(int index) {
+        this.memoryCell = null;
+        this.index = index;
     }
 
     public IMemoryCell getMemoryCell() {
+        if (memoryCell == null) {
+            memoryCell = memory.get(index);
+        }
         return memoryCell;
     }
+
+    public int getIndex() {
+        return (index < 0) ? memoryCell.getAddress().getUnsigned() : index;
+    }
+
+    public int getValue() {
+        return (memory == null) ? memoryCell.getUnsigned() : memory.getValue(index);
+    }
 }
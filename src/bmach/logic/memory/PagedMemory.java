@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.memory;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import util.binary.bitpattern.IBitPattern;
+import util.patterns.observer.IObserver;
+import util.patterns.observer.ISubject;
+
+/**
+ * A memory of up to 64 KiB, kept in pages of 256 cells. A page is allocated
+ * the first time one of its cells is requested or written to a non-zero
+ * value, so the memory used is proportional to the pages a program touches;
+ * reading an unallocated page returns zeros without allocating it.
+ *
+ * Since cells are created lazily, observers are attached to the memory
+ * itself and receive the MemoryCellNotificationData of every cell.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class PagedMemory implements IMainMemory, ISubject {
+
+    public final static int PAGE_SIZE;
+    public final static int MAX_SIZE;
+
+    static {
+        PAGE_SIZE = 256;
+        MAX_SIZE = 65536;
+    }
+    private IMemoryCell[][] pages;
+    private int numberOfCells;
+    private int addressLength;
+    private int allocatedPages;
+    private List<IObserver> observers;
+    private IObserver cellObserver;
+
+    /**
+     * Creates a memory.
+     * @param numberOfCells the number of cells, a multiple of PAGE_SIZE up to MAX_SIZE
+     */
+    public PagedMemory(int numberOfCells) {
+        if ((numberOfCells <= 0) || (numberOfCells > MAX_SIZE) || (numberOfCells % PAGE_SIZE != 0)) {
+            throw new IllegalArgumentException("Invalid memory size: " + numberOfCells);
+        }
+        this.pages = new IMemoryCell[numberOfCells / PAGE_SIZE][];
+        this.numberOfCells = numberOfCells;
+        this.addressLength = (numberOfCells > PAGE_SIZE) ? MemoryAddress.WIDE_LENGTH : 8;
+        this.allocatedPages = 0;
+        this.observers = new CopyOnWriteArrayList<IObserver>();
+        this.cellObserver = new IObserver() {
+
+            public void notifyObserver(Object notificationData) {
+                notifyObservers(notificationData);
+            }
+        };
+    }
+
+    private IMemoryCell[] allocatePage(int page) {
+        IMemoryCell[] cells = new IMemoryCell[PAGE_SIZE];
+        int base = page * PAGE_SIZE;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new MemoryCell(new MemoryAddress(base + i, addressLength));
+            cells[i].addObserver(cellObserver);
+        }
+        pages[page] = cells;
+        allocatedPages++;
+        return cells;
+    }
+
+    public boolean isPageAllocated(int page) {
+        return pages[page] != null;
+    }
+
+    public int getNumberOfPages() {
+        return pages.length;
+    }
+
+    public int getAllocatedPageCount() {
+        return allocatedPages;
+    }
+
+    public void clear() {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                for (int j = 0; j < PAGE_SIZE; j++) {
+                    pages[i][j].setBits(0);
+                }
+            }
+        }
+    }
+
+    public IMemoryCell get(IMemoryAddress address) {
+        return get(address.getUnsigned());
+    }
+
+    public IMemoryCell get(int index) {
+        IMemoryCell[] cells = pages[index / PAGE_SIZE];
+        if (cells == null) {
+            cells = allocatePage(index / PAGE_SIZE);
+        }
+        return cells[index % PAGE_SIZE];
+    }
+
+    public int getValue(int index) {
+        IMemoryCell[] cells = pages[index / PAGE_SIZE];
+        return (cells == null) ? 0 : cells[index % PAGE_SIZE].getUnsigned();
+    }
+
+    public void setValue(int index, int value) {
+        if (((value & 0xFF) != 0) || (pages[index / PAGE_SIZE] != null)) {
+            get(index).setBits(value);
+        }
+    }
+
+    public int getNumberOfCells() {
+        return numberOfCells;
+    }
+
+    public void set(IMemoryAddress address, IBitPattern content) {
+        get(address).setContent(content);
+    }
+
+    public void printBinary(PrintStream out) {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                for (int j = 0; j < PAGE_SIZE; j++) {
+                    out.println(String.format("Memory[%1$5d]: %2$s", i * PAGE_SIZE + j, pages[i][j].getContent().toBinaryString()));
+                }
+            }
+        }
+    }
+
+    public void printHex(PrintStream out) {
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                for (int j = 0; j < PAGE_SIZE; j++) {
+                    out.println(String.format("Memory[%1$5d]: %2$s", i * PAGE_SIZE + j, pages[i][j].getContent().toHexString()));
+                }
+            }
+        }
+    }
+
+    public void addObserver(IObserver observer) {
+        this.observers.add(observer);
+    }
+
+    public void removeObserver(IObserver observer) {
+        this.observers.remove(observer);
+    }
+
+    public void notifyObservers(Object notificationData) {
+        for (Iterator<IObserver> it = observers.iterator(); it.hasNext();) {
+            IObserver iObserver = it.next();
+            iObserver.notifyObserver(notificationData);
+        }
+    }
+}
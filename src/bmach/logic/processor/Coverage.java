@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+import bmach.logic.machine.parser.InstructionParser;
+import bmach.logic.machine.parser.MalformedInstructionException;
+import java.io.PrintStream;
+import java.io.Reader;
+
+/**
+ * The set of addresses from which a processor fetched instructions, kept as
+ * a 256-bit bitset so that recording an instruction is a single bit OR.
+ *
+ * Each run is recorded in its own Coverage, attached with
+ * IProcessor.setCoverage(); the coverages of a batch of runs are then
+ * combined with merge(), which also counts how many runs executed each
+ * address, and exported with writeLCOV().
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class Coverage {
+
+    private final long[] bits;
+    private int[] runCounts;
+    private int runs;
+
+    public Coverage() {
+        this.bits = new long[4];
+        this.runCounts = null;
+        this.runs = 0;
+    }
+
+    /**
+     * Marks the instruction at address as executed.
+     * @param address the address of the instruction
+     */
+    public void record(int address) {
+        bits[address >>> 6] |= 1L << address;
+    }
+
+    public boolean isCovered(int address) {
+        return (bits[(address & 0xFF) >>> 6] & (1L << address)) != 0;
+    }
+
+    /**
+     * Returns the number of addresses from which an instruction was executed.
+     * @return the number of covered addresses
+     */
+    public int getCoveredCount() {
+        int count = 0;
+        for (int i = 0; i < bits.length; i++) {
+            count += Long.bitCount(bits[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Adds the addresses covered by another run to this coverage.
+     * @param run the coverage of the run
+     */
+    public void merge(Coverage run) {
+        if (runCounts == null) {
+            runCounts = new int[256];
+        }
+        for (int i = 0; i < bits.length; i++) {
+            long covered = run.bits[i];
+            bits[i] |= covered;
+            while (covered != 0) {
+                runCounts[(i << 6) | Long.numberOfTrailingZeros(covered)]++;
+                covered &= covered - 1;
+            }
+        }
+        runs++;
+    }
+
+    /**
+     * Returns the number of merged runs that executed the instruction at
+     * address, or 1 / 0 if no run has been merged into this coverage.
+     * @param address the address of the instruction
+     * @return the number of runs that executed the instruction
+     */
+    public int getHits(int address) {
+        if (runCounts == null) {
+            return isCovered(address) ? 1 : 0;
+        }
+        return runCounts[address & 0xFF];
+    }
+
+    /**
+     * Returns the number of runs merged into this coverage.
+     * @return the number of merged runs
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    public void clear() {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = 0;
+        }
+        runCounts = null;
+        runs = 0;
+    }
+
+    /**
+     * Writes an LCOV tracefile record that maps every instruction of a
+     * program to its line in the program's source.
+     * @param out the stream to write to
+     * @param testName the name of the test, or null
+     * @param sourceFile the path of the .bma file, as it should appear in the report
+     * @param source the program's source, loaded at address 0x00
+     * @throws MalformedInstructionException if the source contains a malformed instruction
+     */
+    public void writeLCOV(PrintStream out, String testName, String sourceFile, Reader source) throws MalformedInstructionException {
+        InstructionParser parser = new InstructionParser(source);
+        int linesFound = 0;
+        int linesHit = 0;
+        if (testName != null) {
+            out.println("TN:" + testName);
+        }
+        out.println("SF:" + sourceFile);
+        int address = 0;
+        while ((address < 256) && (parser.parseNextInstruction() != null)) {
+            int hits = getHits(address);
+            out.println("DA:" + parser.getLineNumber() + "," + hits);
+            linesFound++;
+            if (hits > 0) {
+                linesHit++;
+            }
+            address += 2;
+        }
+        out.println("LF:" + linesFound);
+        out.println("LH:" + linesHit);
+        out.println("end_of_record");
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+import util.binary.bitpattern.BitPatternUtils;
+
+/**
+ * The immutable, decoded form of a 16-bit instruction word.
+ * Instances are obtained from InstructionDecoder and shared by every
+ * processor in the JVM.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public final class DecodedInstruction {
+
+    public final static int HANDLER_INVALID;
+    public final static int HANDLER_LOAD_MEMORY;
+    public final static int HANDLER_LOAD_VALUE;
+    public final static int HANDLER_STORE;
+    public final static int HANDLER_MOVE;
+    public final static int HANDLER_ADD;
+    public final static int HANDLER_ADD_FLOAT;
+    public final static int HANDLER_OR;
+    public final static int HANDLER_AND;
+    public final static int HANDLER_XOR;
+    public final static int HANDLER_ROTATE;
+    public final static int HANDLER_JUMP;
+    public final static int HANDLER_HALT;
+
+    static {
+        HANDLER_INVALID = 0;
+        HANDLER_LOAD_MEMORY = 0x1;
+        HANDLER_LOAD_VALUE = 0x2;
+        HANDLER_STORE = 0x3;
+        HANDLER_MOVE = 0x4;
+        HANDLER_ADD = 0x5;
+        HANDLER_ADD_FLOAT = 0x6;
+        HANDLER_OR = 0x7;
+        HANDLER_AND = 0x8;
+        HANDLER_XOR = 0x9;
+        HANDLER_ROTATE = 0xA;
+        HANDLER_JUMP = 0xB;
+        HANDLER_HALT = 0xC;
+    }
+    private final int word;
+    private final int handler;
+    private String description;
+
+    DecodedInstruction(int word) {
+        this.word = word;
+        int opCode = word >>> 12;
+        this.handler = ((opCode >= HANDLER_LOAD_MEMORY) && (opCode <= HANDLER_HALT)) ? opCode : HANDLER_INVALID;
+        this.description = null;
+    }
+
+    /**
+     * Returns the 16-bit instruction word this instance was decoded from.
+     * @return the instruction word
+     */
+    public int getWord() {
+        return word;
+    }
+
+    public int getOpCode() {
+        return word >>> 12;
+    }
+
+    /**
+     * Returns one of the HANDLER_* constants; HANDLER_INVALID marks words that
+     * are not valid instructions.
+     * @return the handler executing this instruction
+     */
+    public int getHandler() {
+        return handler;
+    }
+
+    public boolean isValid() {
+        return handler != HANDLER_INVALID;
+    }
+
+    /**
+     * Returns the register field R (bits 8-11).
+     * @return the index of register R
+     */
+    public int getRegister() {
+        return (word >>> 8) & 0xF;
+    }
+
+    /**
+     * Returns the register field S (bits 4-7).
+     * @return the index of register S
+     */
+    public int getOperand1() {
+        return (word >>> 4) & 0xF;
+    }
+
+    /**
+     * Returns the register field T (bits 0-3), which is the rotation count
+     * of ROTATE instructions.
+     * @return the index of register T
+     */
+    public int getOperand2() {
+        return word & 0xF;
+    }
+
+    /**
+     * Returns the second byte of the instruction, i.e. the memory address or
+     * value operand of LOAD, STORE and JUMP instructions.
+     * @return the byte operand
+     */
+    public int getOperand() {
+        return word & 0xFF;
+    }
+
+    /**
+     * Returns a human-readable description of this instruction. The text is
+     * generated the first time it is requested and cached afterwards.
+     * @return the description of this instruction
+     */
+    public String getDescription() {
+        String result = description;
+        if (result == null) {
+            result = describe();
+            description = result;
+        }
+        return result;
+    }
+
+    private String describe() {
+        String register = hex(getRegister(), 1);
+        String op1 = hex(getOperand1(), 1);
+        String op2 = hex(getOperand2(), 1);
+        String operand = hex(getOperand(), 2);
+        switch (handler) {
+            case 0x1:
+                return "LOAD register " + register + " from memory address " + operand;
+            case 0x2:
+                return "LOAD register " + register + " with the value " + operand;
+            case 0x3:
+                return "STORE from register " + register + " to memory address " + operand;
+            case 0x4:
+                return "MOVE from register " + op1 + " to register " + op2;
+            case 0x5:
+                return "ADD the values in registers " + op1 + " and " + op2 + " and leave result in " + register;
+            case 0x6:
+                return "ADD as floating-point numbers values in registers " + op1 + " and " + op2 + " and leave result in " + register;
+            case 0x7:
+                return "OR the values in registers " + op1 + " and " + op2 + " and leave result in " + register;
+            case 0x8:
+                return "AND the values in registers " + op1 + " and " + op2 + " and leave result in " + register;
+            case 0x9:
+                return "XOR the values in registers " + op1 + " and " + op2 + " and leave result in " + register;
+            case 0xA:
+                return "ROTATE the value in register " + register + " " + getOperand2() + " times";
+            case 0xB:
+                return "JUMP to memory address " + operand + " if register " + register + " contents are equal to those of register 0x0";
+            case 0xC:
+                return "HALT";
+            default:
+                return "UNKNOWN INSTRUCTION";
+        }
+    }
+
+    private static String hex(int value, int minLength) {
+        return "0x" + BitPatternUtils.toHexString(value, minLength);
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
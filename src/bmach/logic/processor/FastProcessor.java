@@ -0,0 +1,1081 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+import bmach.logic.machine.IMachine;
+import bmach.logic.machine.IOPorts;
+import bmach.logic.memory.IMainMemory;
+import bmach.logic.memory.IMemoryAddress;
+import bmach.logic.memory.IMemoryCell;
+import bmach.logic.memory.MemoryCellNotificationData;
+import bmach.logic.programcounter.IProgramCounter;
+import bmach.logic.programcounter.ProgramCounter;
+import bmach.logic.programcounter.ProgramCounterNotificationData;
+import bmach.logic.registers.IRegister;
+import bmach.logic.registers.IRegisterAddress;
+import bmach.logic.registers.Register;
+import bmach.logic.registers.RegisterAddress;
+import bmach.logic.registers.RegisterNotificationData;
+import bmach.logic.trace.ITraceRecorder;
+import bmach.logic.trace.TraceRecord;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import util.binary.bitpattern.BitPattern;
+import util.binary.bitpattern.BitPatternOverflowException;
+import util.binary.bitpattern.BitPatternUtils;
+import util.binary.bitpattern.IBitPattern;
+import util.patterns.observer.IObserver;
+import util.patterns.observer.ISubject;
+
+/**
+ * An IProcessor that keeps the registers, the program counter and a mirror of
+ * the main memory in primitive state and decodes instructions with shifts and
+ * masks.
+ *
+ * step() executes a single instruction without allocating, notifying or
+ * touching the IRegister / IMemoryCell objects; publish() copies the primitive
+ * state back to them. execNext() combines both and behaves exactly like
+ * Processor.execNext(), so the two engines can be used interchangeably.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class FastProcessor implements IProcessor, IObserver {
+
+    public final static int STEP_OK;
+    public final static int STEP_HALT;
+    public final static int STEP_MALFORMED_INSTRUCTION;
+    public final static int STEP_OVERFLOW;
+    public final static int MODE_INTERPRETER;
+    public final static int MODE_TRANSLATED;
+    public final static int MODE_COMPILED;
+    private final static int HOT_BLOCK_THRESHOLD;
+    private final static int MAX_BLOCK_LENGTH;
+    private final static int NUMBER_OF_REGISTERS;
+    private final static int NUMBER_OF_CELLS;
+    private final static short FLOAT_SUM_UNKNOWN;
+    private final static short FLOAT_SUM_OVERFLOW;
+    private final static String[] BINARY_STRINGS;
+    private final static short[] FLOAT_SUMS;
+
+    static {
+        STEP_OK = 0;
+        STEP_HALT = 1;
+        STEP_MALFORMED_INSTRUCTION = 2;
+        STEP_OVERFLOW = 3;
+        MODE_INTERPRETER = 0;
+        MODE_TRANSLATED = 1;
+        MODE_COMPILED = 2;
+        HOT_BLOCK_THRESHOLD = 16;
+        MAX_BLOCK_LENGTH = 128;
+        NUMBER_OF_REGISTERS = 16;
+        NUMBER_OF_CELLS = 256;
+        FLOAT_SUM_UNKNOWN = -2;
+        FLOAT_SUM_OVERFLOW = -1;
+        BINARY_STRINGS = new String[256];
+        for (int i = 0; i < 256; i++) {
+            BINARY_STRINGS[i] = BitPatternUtils.toBinaryString(i, 8);
+        }
+        FLOAT_SUMS = new short[256 * 256];
+        for (int i = 0; i < FLOAT_SUMS.length; i++) {
+            FLOAT_SUMS[i] = FLOAT_SUM_UNKNOWN;
+        }
+    }
+    private IMachine machine;
+    private IMainMemory observedMemory;
+    private IMemoryCell[] cells;
+    private IProgramCounter programCounter;
+    private IRegister[] registerViews;
+    private List<IObserver> observers;
+    private boolean hasReachedEnd;
+    private boolean publishing;
+    private int lastInstructionAddress;
+    private int lastInstruction;
+    private int lastStatus;
+    private int executionMode;
+    private long instructionCount;
+    private final TranslatedBlock[] blocks;
+    private final int[] blockEntries;
+    private final long[] translatedCode;
+    private Operation[] operations;
+    private Profiler profiler;
+    private Coverage coverage;
+    private ITraceRecorder traceRecorder;
+    private boolean stepNotifications;
+    private IOPorts ioPorts;
+    int inputPort;
+    int outputPort;
+    final byte[] memory;
+    final byte[] registers;
+    final long[] dirtyCells;
+    int pc;
+
+    public FastProcessor() {
+        this.machine = null;
+        this.observedMemory = null;
+        this.cells = new IMemoryCell[NUMBER_OF_CELLS];
+        this.programCounter = new ProgramCounter();
+        this.registerViews = new IRegister[NUMBER_OF_REGISTERS];
+        this.observers = new ArrayList<IObserver>();
+        this.hasReachedEnd = false;
+        this.publishing = false;
+        this.lastStatus = STEP_OK;
+        this.ioPorts = null;
+        this.inputPort = IOPorts.NONE;
+        this.outputPort = IOPorts.NONE;
+        this.memory = new byte[NUMBER_OF_CELLS];
+        this.registers = new byte[NUMBER_OF_REGISTERS];
+        this.dirtyCells = new long[NUMBER_OF_CELLS / 64];
+        this.pc = 0;
+        this.executionMode = MODE_INTERPRETER;
+        this.instructionCount = 0;
+        this.blocks = new TranslatedBlock[NUMBER_OF_CELLS];
+        this.blockEntries = new int[NUMBER_OF_CELLS];
+        this.translatedCode = new long[NUMBER_OF_CELLS / 64];
+        this.operations = null;
+        this.profiler = null;
+        this.coverage = null;
+        this.traceRecorder = null;
+        this.stepNotifications = true;
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            IRegister register = new Register(new RegisterAddress("0x" + Integer.toHexString(i)));
+            register.addObserver(this);
+            registerViews[i] = register;
+        }
+        programCounter.addObserver(this);
+    }
+
+    public IRegister getRegister(int registerIndex) {
+        if ((registerIndex >= 0) && (registerIndex < NUMBER_OF_REGISTERS)) {
+            return registerViews[registerIndex];
+        }
+        return null;
+    }
+
+    public int getNumberOfRegisters() {
+        return NUMBER_OF_REGISTERS;
+    }
+
+    public IProgramCounter getProgramCounter() {
+        return this.programCounter;
+    }
+
+    public boolean hasReachedEnd() {
+        return this.hasReachedEnd;
+    }
+
+    /**
+     * Returns the address of the next instruction to be executed.
+     * @return the program counter's value
+     */
+    public int getProgramCounterValue() {
+        return pc;
+    }
+
+    /**
+     * Returns the value of a register from the primitive state.
+     * @param registerIndex the register's index
+     * @return the register's value (0-255)
+     */
+    public int getRegisterValue(int registerIndex) {
+        return registers[registerIndex] & 0xFF;
+    }
+
+    /**
+     * Sets the value of a register in the primitive state and in its
+     * IRegister object.
+     * @param registerIndex the register's index
+     * @param value the register's new value - only its lower 8 bits are used
+     */
+    public void setRegisterValue(int registerIndex, int value) {
+        registers[registerIndex] = (byte) value;
+        publishRegister(registerIndex);
+    }
+
+    /**
+     * Returns the contents of a memory cell from the primitive state.
+     * @param address the cell's address
+     * @return the cell's contents (0-255)
+     */
+    public int getMemoryValue(int address) {
+        return memory[address & 0xFF] & 0xFF;
+    }
+
+    /**
+     * Copies the values of the 16 registers into dest.
+     * @param dest the destination array
+     * @param offset the index in dest where register 0 is stored
+     */
+    public void copyRegisters(byte[] dest, int offset) {
+        System.arraycopy(registers, 0, dest, offset, NUMBER_OF_REGISTERS);
+    }
+
+    /**
+     * Copies the contents of the 256 memory cells into dest.
+     * @param dest the destination array
+     * @param offset the index in dest where the contents of address 0x00 are stored
+     */
+    public void copyMemory(byte[] dest, int offset) {
+        System.arraycopy(memory, 0, dest, offset, NUMBER_OF_CELLS);
+    }
+
+    /**
+     * Replaces the values of the 16 registers with those stored in src.
+     * Like step(), this only changes the primitive state; call publish() to
+     * update the IRegister objects.
+     * @param src the source array
+     * @param offset the index in src where register 0 is stored
+     */
+    public void restoreRegisters(byte[] src, int offset) {
+        System.arraycopy(src, offset, registers, 0, NUMBER_OF_REGISTERS);
+    }
+
+    /**
+     * Replaces the contents of the 256 memory cells with those stored in src.
+     * Only the cells whose value changes are marked as modified, so the next
+     * call to publish() updates just those IMemoryCell objects.
+     * @param src the source array
+     * @param offset the index in src where the contents of address 0x00 are stored
+     */
+    public void restoreMemory(byte[] src, int offset) {
+        for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+            byte value = src[offset + i];
+            if (memory[i] != value) {
+                writeMemory(i, value);
+            }
+        }
+    }
+
+    /**
+     * Sets the address of the next instruction to be executed and clears the
+     * halted state, so that execution can resume from there.
+     * @param address the new value of the program counter - only its lower 8 bits are used
+     */
+    public void setProgramCounterValue(int address) {
+        this.pc = address & 0xFF;
+        this.hasReachedEnd = false;
+        this.lastStatus = STEP_OK;
+    }
+
+    /**
+     * Returns the number of instructions fetched by step() and run() since
+     * the last call to init().
+     * @return the number of executed instructions
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * Selects how run() executes programs: MODE_INTERPRETER executes one
+     * instruction at a time, MODE_TRANSLATED translates frequently executed
+     * basic blocks and executes them as a whole and MODE_COMPILED compiles
+     * every address of the memory image into a pre-bound Operation.
+     * @param executionMode one of the MODE_* constants
+     */
+    public void setExecutionMode(int executionMode) {
+        this.executionMode = executionMode;
+        clearTranslations();
+        if (executionMode == MODE_COMPILED) {
+            operations = new Operation[NUMBER_OF_CELLS];
+            for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+                linkOperation(i);
+            }
+        } else {
+            operations = null;
+        }
+    }
+
+    /**
+     * Loads the contents of mainMemory and, in MODE_COMPILED, compiles them
+     * so that the first call to run() does not have to.
+     * @param mainMemory the memory holding the program
+     */
+    public void compile(IMainMemory mainMemory) {
+        attachMemory(mainMemory);
+    }
+
+    public int getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Attaches a profiler that counts every executed instruction. While a
+     * profiler is attached run() executes one instruction at a time, whatever
+     * the execution mode.
+     * @param profiler the profiler, or null to stop profiling
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Attaches the coverage that records the address of every executed
+     * instruction. Unlike a profiler, coverage is recorded in every
+     * execution mode.
+     * @param coverage the coverage, or null to stop recording
+     */
+    public void setCoverage(Coverage coverage) {
+        this.coverage = coverage;
+    }
+
+    public Coverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Attaches a recorder that receives every executed instruction. Like a
+     * profiler, a recorder makes run() execute one instruction at a time.
+     * @param traceRecorder the recorder, or null to stop tracing
+     */
+    public void setTraceRecorder(ITraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    public ITraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Sets whether execNext() reports each instruction it executes to the
+     * observers; run() and step() never do.
+     * @param stepNotifications false to execute instructions silently
+     */
+    public void setStepNotifications(boolean stepNotifications) {
+        this.stepNotifications = stepNotifications;
+    }
+
+    public boolean getStepNotifications() {
+        return stepNotifications;
+    }
+
+    public void init(IMachine machine) {
+        this.machine = machine;
+        addObserver(machine);
+        attachMemory(machine.getMemory());
+        this.hasReachedEnd = false;
+        this.lastStatus = STEP_OK;
+        this.pc = 0;
+        this.instructionCount = 0;
+        this.ioPorts = machine.getIOPorts();
+        this.inputPort = ioPorts.getInputPort();
+        this.outputPort = ioPorts.getOutputPort();
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            registers[i] = 0;
+            publishRegister(i);
+        }
+        publishing = true;
+        try {
+            this.programCounter.reset();
+        } finally {
+            publishing = false;
+        }
+        notifyObservers(new ProcessorNotificationData("init"));
+    }
+
+    private void attachMemory(IMainMemory mainMemory) {
+        if (observedMemory != mainMemory) {
+            if (observedMemory instanceof ISubject) {
+                ((ISubject) observedMemory).removeObserver(this);
+            }
+            for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+                if (cells[i] != null) {
+                    cells[i].removeObserver(this);
+                }
+            }
+            observedMemory = mainMemory;
+            // memories that are subjects are observed as a whole, without requesting their cells
+            boolean observeCells = !(mainMemory instanceof ISubject);
+            if (!observeCells) {
+                ((ISubject) mainMemory).addObserver(this);
+            }
+            for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+                cells[i] = (observeCells && (i < mainMemory.getNumberOfCells())) ? mainMemory.get(i) : null;
+                if (cells[i] != null) {
+                    cells[i].addObserver(this);
+                }
+            }
+        }
+        for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+            memory[i] = (i < mainMemory.getNumberOfCells()) ? (byte) mainMemory.getValue(i) : 0;
+        }
+        for (int i = 0; i < dirtyCells.length; i++) {
+            dirtyCells[i] = 0;
+        }
+        clearTranslations();
+        if (operations != null) {
+            for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+                linkOperation(i);
+            }
+        }
+    }
+
+    private void linkOperation(int address) {
+        operations[address] = Operation.forWord(((memory[address] & 0xFF) << 8) | (memory[(address + 1) & 0xFF] & 0xFF));
+    }
+
+    /**
+     * Executes the instruction pointed to by the program counter using only the
+     * primitive state. Nothing is allocated and no observer is notified; when
+     * an error is reported the state is left untouched and getLastError()
+     * describes it.
+     * @return one of the STEP_* constants
+     */
+    public int step() {
+        int address = pc;
+        int word = ((memory[address] & 0xFF) << 8) | (memory[(address + 1) & 0xFF] & 0xFF);
+        lastInstructionAddress = address;
+        lastInstruction = word;
+        int oldValue = (traceRecorder == null) ? 0 : readDestination(word);
+        lastStatus = execute(word);
+        instructionCount++;
+        if ((lastStatus == STEP_OK) || (lastStatus == STEP_HALT)) {
+            if (coverage != null) {
+                coverage.record(address);
+            }
+            if (profiler != null) {
+                profiler.record(address, word, pc);
+            }
+            if (traceRecorder != null) {
+                traceRecorder.record(address, word, oldValue, readDestination(word), pc);
+            }
+        }
+        return lastStatus;
+    }
+
+    /**
+     * Executes up to maxInstructions instructions, stopping earlier when the
+     * program halts or fails. Like step(), nothing is allocated - apart from
+     * the translation of hot basic blocks in MODE_TRANSLATED - and no observer
+     * is notified.
+     * @param maxInstructions the maximum number of instructions to execute
+     * @return the status of the last executed instruction (one of the STEP_* constants)
+     */
+    public int run(long maxInstructions) {
+        long end = instructionCount + maxInstructions;
+        boolean stepping = (profiler != null) || (traceRecorder != null);
+        if ((operations != null) && (!stepping)) {
+            return runCompiled(end);
+        }
+        int status = STEP_OK;
+        while ((status == STEP_OK) && (instructionCount < end)) {
+            if ((executionMode == MODE_TRANSLATED) && (!stepping)) {
+                TranslatedBlock block = blocks[pc];
+                if ((block == null) && (++blockEntries[pc] >= HOT_BLOCK_THRESHOLD)) {
+                    block = translate(pc);
+                }
+                if ((block != null) && (block.getLength() <= end - instructionCount)) {
+                    status = runBlock(block);
+                    continue;
+                }
+            }
+            status = step();
+        }
+        return status;
+    }
+
+    private int runCompiled(long end) {
+        Operation[] operations = this.operations;
+        Coverage coverage = this.coverage;
+        int status = STEP_OK;
+        if (coverage == null) {
+            while ((status == STEP_OK) && (instructionCount < end)) {
+                status = operations[pc].execute(this);
+                instructionCount++;
+            }
+        } else {
+            while ((status == STEP_OK) && (instructionCount < end)) {
+                int address = pc;
+                status = operations[address].execute(this);
+                instructionCount++;
+                if ((status == STEP_OK) || (status == STEP_HALT)) {
+                    coverage.record(address);
+                }
+            }
+        }
+        if (status != STEP_OK) {
+            lastInstructionAddress = pc;
+            lastInstruction = operations[pc].getWord();
+        }
+        lastStatus = status;
+        return status;
+    }
+
+    private TranslatedBlock translate(int start) {
+        int[] words = new int[MAX_BLOCK_LENGTH];
+        int length = 0;
+        int address = start;
+        while (length < MAX_BLOCK_LENGTH) {
+            int word = ((memory[address] & 0xFF) << 8) | (memory[(address + 1) & 0xFF] & 0xFF);
+            int opCode = word >>> 12;
+            if ((opCode < 0x1) || (opCode > 0xC)) {
+                break;
+            }
+            words[length++] = word;
+            address = (address + 2) & 0xFF;
+            if ((opCode == 0xB) || (opCode == 0xC) || (address == start)) {
+                break;
+            }
+        }
+        blockEntries[start] = 0;
+        if (length == 0) {
+            return null;
+        }
+        int[] blockWords = new int[length];
+        System.arraycopy(words, 0, blockWords, 0, length);
+        TranslatedBlock block = new TranslatedBlock(start, blockWords);
+        blocks[start] = block;
+        for (int i = 0; i < length * 2; i++) {
+            int covered = (start + i) & 0xFF;
+            translatedCode[covered >>> 6] |= 1L << covered;
+        }
+        return block;
+    }
+
+    private int runBlock(TranslatedBlock block) {
+        byte[] registers = this.registers;
+        byte[] memory = this.memory;
+        int[] words = block.getWords();
+        int length = words.length;
+        int status = STEP_OK;
+        int target = -1;
+        int i = 0;
+        execution:
+        for (; i < length; i++) {
+            int word = words[i];
+            int r = (word >>> 8) & 0xF;
+            int s = (word >>> 4) & 0xF;
+            int t = word & 0xF;
+            int operand = word & 0xFF;
+            switch (word >>> 12) {
+                case 0x1:
+                    registers[r] = (operand == inputPort) ? readInput() : memory[operand];
+                    break;
+                case 0x2:
+                    registers[r] = (byte) operand;
+                    break;
+                case 0x3:
+                    if (operand == outputPort) {
+                        writeOutput(registers[r]);
+                        break;
+                    }
+                    writeMemory(operand, registers[r]);
+                    if (!block.isValid()) {
+                        i++;
+                        break execution;
+                    }
+                    break;
+                case 0x4:
+                    registers[t] = registers[s];
+                    break;
+                case 0x5: {
+                    int sum = registers[s] + registers[t];
+                    if ((sum < -128) || (sum > 127)) {
+                        status = STEP_OVERFLOW;
+                        break execution;
+                    }
+                    registers[r] = (byte) sum;
+                    break;
+                }
+                case 0x6: {
+                    int sum = addFloats(registers[s] & 0xFF, registers[t] & 0xFF);
+                    if (sum < 0) {
+                        status = STEP_OVERFLOW;
+                        break execution;
+                    }
+                    registers[r] = (byte) sum;
+                    break;
+                }
+                case 0x7:
+                    registers[r] = (byte) (registers[s] | registers[t]);
+                    break;
+                case 0x8:
+                    registers[r] = (byte) (registers[s] & registers[t]);
+                    break;
+                case 0x9:
+                    registers[r] = (byte) (registers[s] ^ registers[t]);
+                    break;
+                case 0xA: {
+                    int value = registers[r] & 0xFF;
+                    int times = t & 7;
+                    registers[r] = (byte) ((value >>> times) | (value << (8 - times)));
+                    break;
+                }
+                case 0xB:
+                    if (registers[r] == registers[0]) {
+                        target = operand;
+                    }
+                    i++;
+                    break execution;
+                default:
+                    hasReachedEnd = true;
+                    status = STEP_HALT;
+                    break execution;
+            }
+        }
+        int start = block.getStart();
+        if (status == STEP_OK) {
+            lastInstructionAddress = (start + (i - 1) * 2) & 0xFF;
+            lastInstruction = words[i - 1];
+            pc = (target >= 0) ? target : ((start + i * 2) & 0xFF);
+            instructionCount += i;
+        } else {
+            lastInstructionAddress = (start + i * 2) & 0xFF;
+            lastInstruction = words[i];
+            pc = lastInstructionAddress;
+            instructionCount += i + 1;
+        }
+        if (coverage != null) {
+            int executed = (status == STEP_HALT) ? i + 1 : i;
+            for (int j = 0; j < executed; j++) {
+                coverage.record((start + j * 2) & 0xFF);
+            }
+        }
+        lastStatus = status;
+        return status;
+    }
+
+    private int readDestination(int word) {
+        int kind = TraceRecord.getDestinationKind(word);
+        if (kind == TraceRecord.DESTINATION_REGISTER) {
+            return registers[TraceRecord.getDestinationIndex(word)] & 0xFF;
+        } else if (kind == TraceRecord.DESTINATION_MEMORY) {
+            return memory[TraceRecord.getDestinationIndex(word)] & 0xFF;
+        }
+        return 0;
+    }
+
+    private void invalidateTranslations(int address) {
+        for (int i = 0; i < translatedCode.length; i++) {
+            translatedCode[i] = 0;
+        }
+        for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+            TranslatedBlock block = blocks[i];
+            if (block != null) {
+                if (block.covers(address)) {
+                    block.invalidate();
+                    blocks[i] = null;
+                } else {
+                    for (int j = 0; j < block.getLength() * 2; j++) {
+                        int covered = (i + j) & 0xFF;
+                        translatedCode[covered >>> 6] |= 1L << covered;
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearTranslations() {
+        for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+            if (blocks[i] != null) {
+                blocks[i].invalidate();
+                blocks[i] = null;
+            }
+            blockEntries[i] = 0;
+        }
+        for (int i = 0; i < translatedCode.length; i++) {
+            translatedCode[i] = 0;
+        }
+    }
+
+    private int execute(int word) {
+        int r = (word >>> 8) & 0xF;
+        int s = (word >>> 4) & 0xF;
+        int t = word & 0xF;
+        int operand = word & 0xFF;
+        switch (word >>> 12) {
+            case 0x1: // LOAD from memory
+                registers[r] = (operand == inputPort) ? readInput() : memory[operand];
+                break;
+            case 0x2: // LOAD bit pattern
+                registers[r] = (byte) operand;
+                break;
+            case 0x3: // STORE to memory
+                if (operand == outputPort) {
+                    writeOutput(registers[r]);
+                } else {
+                    writeMemory(operand, registers[r]);
+                }
+                break;
+            case 0x4: // MOVE from S to T
+                registers[t] = registers[s];
+                break;
+            case 0x5: { // ADD S and T and save to R
+                int sum = registers[s] + registers[t];
+                if ((sum < -128) || (sum > 127)) {
+                    return STEP_OVERFLOW;
+                }
+                registers[r] = (byte) sum;
+                break;
+            }
+            case 0x6: { // ADD floats in S and T and save to R
+                int sum = addFloats(registers[s] & 0xFF, registers[t] & 0xFF);
+                if (sum < 0) {
+                    return STEP_OVERFLOW;
+                }
+                registers[r] = (byte) sum;
+                break;
+            }
+            case 0x7: // OR S and T and save to R
+                registers[r] = (byte) (registers[s] | registers[t]);
+                break;
+            case 0x8: // AND S and T and save to R
+                registers[r] = (byte) (registers[s] & registers[t]);
+                break;
+            case 0x9: // XOR S and T and save to R
+                registers[r] = (byte) (registers[s] ^ registers[t]);
+                break;
+            case 0xA: { // ROTATE R right X times
+                int value = registers[r] & 0xFF;
+                int times = t & 7;
+                registers[r] = (byte) ((value >>> times) | (value << (8 - times)));
+                break;
+            }
+            case 0xB: // JUMP to target if R == register 0
+                if (registers[r] == registers[0]) {
+                    pc = operand;
+                    return STEP_OK;
+                }
+                break;
+            case 0xC: // HALT
+                hasReachedEnd = true;
+                return STEP_HALT;
+            default:
+                return STEP_MALFORMED_INSTRUCTION;
+        }
+        pc = (pc + 2) & 0xFF;
+        return STEP_OK;
+    }
+
+    /**
+     * Writes a byte to the memory mirror, discarding or patching any
+     * translated or compiled code that covers the address.
+     * @param address the memory address
+     * @param value the new value
+     */
+    void writeMemory(int address, byte value) {
+        memory[address] = value;
+        dirtyCells[address >>> 6] |= 1L << address;
+        codeModified(address);
+    }
+
+    /**
+     * Reads the next byte of the machine's input, for a LOAD from the input
+     * port.
+     * @return the byte
+     */
+    byte readInput() {
+        return (byte) ioPorts.read();
+    }
+
+    /**
+     * Appends a byte to the machine's output, for a STORE to the output port.
+     * @param value the byte
+     */
+    void writeOutput(byte value) {
+        ioPorts.write(value);
+    }
+
+    private void codeModified(int address) {
+        if ((translatedCode[address >>> 6] & (1L << address)) != 0) {
+            invalidateTranslations(address);
+        }
+        if (operations != null) {
+            linkOperation((address - 1) & 0xFF);
+            linkOperation(address);
+        }
+    }
+
+    void reachEnd() {
+        hasReachedEnd = true;
+    }
+
+    static int addFloats(int a, int b) {
+        int index = (a << 8) | b;
+        int sum = FLOAT_SUMS[index];
+        if (sum == FLOAT_SUM_UNKNOWN) {
+            try {
+                IBitPattern value1 = new BitPattern(8);
+                IBitPattern value2 = new BitPattern(8);
+                value1.setBits(a);
+                value2.setBits(b);
+                sum = BitPatternUtils.addFloats(value1, value2).getUnsigned();
+            } catch (BitPatternOverflowException boe) {
+                sum = FLOAT_SUM_OVERFLOW;
+            }
+            FLOAT_SUMS[index] = (short) sum;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the exception Processor would have thrown for the error reported
+     * by the last call to step(), or null if it completed normally.
+     * @return a MalformedProcessorInstructionException, a BitPatternOverflowException or null
+     */
+    public Exception getLastError() {
+        if (lastStatus == STEP_MALFORMED_INSTRUCTION) {
+            IBitPattern instruction = new BitPattern(16);
+            instruction.setBits(lastInstruction);
+            return new MalformedProcessorInstructionException(instruction);
+        } else if (lastStatus == STEP_OVERFLOW) {
+            IBitPattern value1 = new BitPattern(8);
+            IBitPattern value2 = new BitPattern(8);
+            value1.setBits(registers[(lastInstruction >>> 4) & 0xF]);
+            value2.setBits(registers[lastInstruction & 0xF]);
+            try {
+                if ((lastInstruction >>> 12) == 0x6) {
+                    BitPatternUtils.addFloats(value1, value2);
+                } else {
+                    BitPattern.add(value1, value2);
+                }
+            } catch (BitPatternOverflowException boe) {
+                return boe;
+            }
+        }
+        return null;
+    }
+
+    public void execNext() throws MalformedProcessorInstructionException, BitPatternOverflowException {
+        int status = step();
+        if (status == STEP_MALFORMED_INSTRUCTION) {
+            MalformedProcessorInstructionException mpie = (MalformedProcessorInstructionException) getLastError();
+            notifyObservers(new ProcessorNotificationData(mpie));
+            throw mpie;
+        } else if (status == STEP_OVERFLOW) {
+            BitPatternOverflowException boe = (BitPatternOverflowException) getLastError();
+            notifyObservers(new ProcessorNotificationData(boe));
+            throw boe;
+        }
+        publishInstruction(lastInstruction);
+        if (status == STEP_HALT) {
+            halt();
+        }
+        if (stepNotifications) {
+            BitPattern executed = new BitPattern(24);
+            executed.setBits((lastInstructionAddress << 16) | lastInstruction);
+            notifyObservers(new ProcessorNotificationData(executed));
+        }
+    }
+
+    private void perform(int word) throws BitPatternOverflowException {
+        lastInstruction = word;
+        lastStatus = execute(word);
+        if (lastStatus == STEP_OVERFLOW) {
+            throw (BitPatternOverflowException) getLastError();
+        }
+        publishInstruction(word);
+    }
+
+    public void halt() {
+        machine.halt();
+        notifyObservers(new ProcessorNotificationData("halt"));
+    }
+
+    public void load(IMemoryAddress src, IRegisterAddress dest) {
+        performUnchecked(0x1000 | (registerIndex(dest) << 8) | cellIndex(src));
+    }
+
+    public void load(IBitPattern value, IRegisterAddress dest) {
+        performUnchecked(0x2000 | (registerIndex(dest) << 8) | (value.intValue() & 0xFF));
+    }
+
+    public void store(IRegisterAddress src, IMemoryAddress dest) {
+        performUnchecked(0x3000 | (registerIndex(src) << 8) | cellIndex(dest));
+    }
+
+    public void move(IRegisterAddress src, IRegisterAddress dest) {
+        performUnchecked(0x4000 | (registerIndex(src) << 4) | registerIndex(dest));
+    }
+
+    public void add(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
+        perform(0x5000 | (registerIndex(dest) << 8) | (registerIndex(src1) << 4) | registerIndex(src2));
+    }
+
+    public void addFloat(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
+        perform(0x6000 | (registerIndex(dest) << 8) | (registerIndex(src1) << 4) | registerIndex(src2));
+    }
+
+    public void and(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
+        perform(0x8000 | (registerIndex(dest) << 8) | (registerIndex(src1) << 4) | registerIndex(src2));
+    }
+
+    public void or(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
+        perform(0x7000 | (registerIndex(dest) << 8) | (registerIndex(src1) << 4) | registerIndex(src2));
+    }
+
+    public void xor(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
+        perform(0x9000 | (registerIndex(dest) << 8) | (registerIndex(src1) << 4) | registerIndex(src2));
+    }
+
+    public void rotate(IRegisterAddress address, int times) {
+        performUnchecked(0xA000 | (registerIndex(address) << 8) | (times & 7));
+    }
+
+    public void jump(IRegisterAddress address, IMemoryAddress target) {
+        performUnchecked(0xB000 | (registerIndex(address) << 8) | cellIndex(target));
+    }
+
+    private void performUnchecked(int word) {
+        try {
+            perform(word);
+        } catch (BitPatternOverflowException boe) {
+            // only ADD instructions can overflow
+        }
+    }
+
+    private static int registerIndex(IRegisterAddress address) {
+        return address.intValue() & 0xF;
+    }
+
+    private static int cellIndex(IMemoryAddress address) {
+        return address.intValue() & 0xFF;
+    }
+
+    /**
+     * Copies the primitive registers, program counter and every memory cell
+     * written since the last call into the corresponding IRegister,
+     * IProgramCounter and IMemoryCell objects, notifying their observers.
+     */
+    public void publish() {
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            publishRegister(i);
+        }
+        for (int i = 0; i < dirtyCells.length; i++) {
+            long dirty = dirtyCells[i];
+            while (dirty != 0) {
+                int bit = Long.numberOfTrailingZeros(dirty);
+                publishCell((i << 6) | bit);
+                dirty &= dirty - 1;
+            }
+        }
+        publishProgramCounter();
+    }
+
+    private void publishInstruction(int word) {
+        switch (word >>> 12) {
+            case 0x3:
+                publishCell(word & 0xFF);
+                break;
+            case 0x4:
+                publishRegister(word & 0xF);
+                break;
+            case 0xB:
+            case 0xC:
+                break;
+            default:
+                publishRegister((word >>> 8) & 0xF);
+        }
+        if ((word >>> 12) != 0xC) {
+            publishProgramCounter();
+        }
+    }
+
+    private void publishRegister(int index) {
+        publishing = true;
+        try {
+            registerViews[index].setBits(registers[index]);
+        } finally {
+            publishing = false;
+        }
+    }
+
+    private void publishCell(int address) {
+        dirtyCells[address >>> 6] &= ~(1L << address);
+        if (cells[address] != null) {
+            publishing = true;
+            try {
+                cells[address].setBits(memory[address]);
+            } finally {
+                publishing = false;
+            }
+        } else if (observedMemory instanceof ISubject) {
+            publishing = true;
+            try {
+                observedMemory.setValue(address, memory[address]);
+            } finally {
+                publishing = false;
+            }
+        }
+    }
+
+    private void publishProgramCounter() {
+        publishing = true;
+        try {
+            programCounter.jumpTo(pc);
+        } finally {
+            publishing = false;
+        }
+    }
+
+    /**
+     * Keeps the primitive state in sync when the register, program counter or
+     * memory cell objects are modified from outside this processor.
+     * @param notificationData the notification sent by the modified object
+     */
+    public void notifyObserver(Object notificationData) {
+        if (publishing) {
+            return;
+        }
+        if (notificationData instanceof MemoryCellNotificationData) {
+            MemoryCellNotificationData data = (MemoryCellNotificationData) notificationData;
+            int address = data.getIndex() & 0xFF;
+            memory[address] = (byte) data.getValue();
+            dirtyCells[address >>> 6] &= ~(1L << address);
+            codeModified(address);
+        } else if (notificationData instanceof RegisterNotificationData) {
+            IRegister register = ((RegisterNotificationData) notificationData).getSender();
+            registers[register.getAddress().intValue() & 0xF] = (byte) register.getContent().intValue();
+        } else if (notificationData instanceof ProgramCounterNotificationData) {
+            pc = ((ProgramCounterNotificationData) notificationData).getIndex() & 0xFF;
+        }
+    }
+
+    public void addObserver(IObserver observer) {
+        if (!this.observers.contains(observer)) {
+            this.observers.add(observer);
+        }
+    }
+
+    public void removeObserver(IObserver observer) {
+        this.observers.remove(observer);
+    }
+
+    public void notifyObservers(Object notificationData) {
+        for (Iterator<IObserver> it = observers.iterator(); it.hasNext();) {
+            IObserver iObserver = it.next();
+            iObserver.notifyObserver(notificationData);
+        }
+    }
+
+    public void printRegistersHex(PrintStream out) {
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            out.println(String.format("Register[%1$2d]: %2$s", i, "0x" + BitPatternUtils.toHexString(registers[i] & 0xFF, 2)));
+        }
+    }
+
+    public void printRegistersBinary(PrintStream out) {
+        for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+            out.println(String.format("Register[%1$2d]: %2$s", i, BINARY_STRINGS[registers[i] & 0xFF]));
+        }
+    }
+}
@@ -21,6 +21,7 @@ import bmach.logic.memory.IMemoryAddress;
 import bmach.logic.programcounter.IProgramCounter;
 import bmach.logic.registers.IRegister;
 import bmach.logic.registers.IRegisterAddress;
+import bmach.logic.trace.ITraceRecorder;
 import java.io.PrintStream;
 import util.binary.bitpattern.BitPatternOverflowException;
 import util.binary.bitpattern.IBitPattern;
@@ -68,7 +69,29 @@ public interface IProcessor extends ISubject {
 
     public IRegister getRegister(int registerIndex);
 
+    public int getRegisterValue(int registerIndex);
+
+    public void setRegisterValue(int registerIndex, int value);
+
     public int getNumberOfRegisters();
 
     public IProgramCounter getProgramCounter();
+
+    public void setProgramCounterValue(int address);
+
+    public void setProfiler(Profiler profiler);
+
+    public Profiler getProfiler();
+
+    public void setCoverage(Coverage coverage);
+
+    public Coverage getCoverage();
+
+    public void setTraceRecorder(ITraceRecorder traceRecorder);
+
+    public ITraceRecorder getTraceRecorder();
+
+    public void setStepNotifications(boolean stepNotifications);
+
+    public boolean getStepNotifications();
 }
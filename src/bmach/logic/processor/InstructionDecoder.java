@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+import util.binary.bitpattern.IBitPattern;
+
+/**
+ * Decodes instruction words through a table holding the DecodedInstruction
+ * of every possible 16-bit word. The table is built once, the first time it
+ * is used, and is shared by all processors.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class InstructionDecoder {
+
+    private final static int NUMBER_OF_WORDS = 65536;
+
+    private static class TableHolder {
+
+        private final static DecodedInstruction[] TABLE = buildTable();
+
+        private static DecodedInstruction[] buildTable() {
+            DecodedInstruction[] table = new DecodedInstruction[NUMBER_OF_WORDS];
+            for (int i = 0; i < NUMBER_OF_WORDS; i++) {
+                table[i] = new DecodedInstruction(i);
+            }
+            return table;
+        }
+    }
+
+    private InstructionDecoder() {
+    }
+
+    /**
+     * Returns the decoded form of a 16-bit instruction word.
+     * @param word the instruction word - only its lower 16 bits are used
+     * @return the shared DecodedInstruction for word
+     */
+    public static DecodedInstruction decode(int word) {
+        return TableHolder.TABLE[word & 0xFFFF];
+    }
+
+    /**
+     * Returns the decoded form of the instruction made up of two bytes.
+     * @param byte1 the first (high) byte of the instruction
+     * @param byte2 the second (low) byte of the instruction
+     * @return the shared DecodedInstruction for the two bytes
+     */
+    public static DecodedInstruction decode(IBitPattern byte1, IBitPattern byte2) {
+        return TableHolder.TABLE[((byte1.getUnsigned() & 0xFF) << 8) | (byte2.getUnsigned() & 0xFF)];
+    }
+}
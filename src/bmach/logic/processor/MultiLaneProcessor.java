@@ -0,0 +1,532 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+/**
+ * Executes the same program on a number of independent machines ("lanes")
+ * in lockstep, e.g. to evaluate one program against many test inputs.
+ *
+ * The state is stored as a structure of arrays - registers[register][lane]
+ * and memory[address][lane] - so that while all lanes execute the same
+ * instruction every operation is a loop over contiguous arrays, which
+ * HotSpot can compile to SIMD instructions. Lanes that have stopped are
+ * masked out of these loops, so the running lanes keep using them after
+ * some lanes halt. Lanes whose program counter or instruction differs (after
+ * a JUMP, or in self-modifying programs) are grouped by program counter,
+ * with a counting sort, and executed separately until they converge again.
+ * Each lane behaves exactly like a FastProcessor running on its own.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class MultiLaneProcessor {
+
+    private final static int NUMBER_OF_REGISTERS;
+    private final static int NUMBER_OF_CELLS;
+
+    static {
+        NUMBER_OF_REGISTERS = 16;
+        NUMBER_OF_CELLS = 256;
+    }
+    private final int lanes;
+    private final byte[][] registers;
+    private final byte[][] memory;
+    private final int[] programCounters;
+    private final int[] statuses;
+    private final long[] instructionCounts;
+    private final byte[] mask;
+    private final int[] group;
+    private final int[] groupStart;
+    private final int[] groupEnd;
+    private final int[] sorted;
+
+    /**
+     * Creates a processor for the given number of lanes, each one with empty
+     * memory and registers.
+     * @param lanes the number of lanes
+     */
+    public MultiLaneProcessor(int lanes) {
+        this.lanes = lanes;
+        this.registers = new byte[NUMBER_OF_REGISTERS][lanes];
+        this.memory = new byte[NUMBER_OF_CELLS][lanes];
+        this.programCounters = new int[lanes];
+        this.statuses = new int[lanes];
+        this.instructionCounts = new long[lanes];
+        this.mask = new byte[lanes];
+        this.group = new int[lanes];
+        this.groupStart = new int[NUMBER_OF_CELLS + 1];
+        this.groupEnd = new int[NUMBER_OF_CELLS];
+        this.sorted = new int[lanes];
+    }
+
+    public int getNumberOfLanes() {
+        return lanes;
+    }
+
+    /**
+     * Copies a memory image into every lane and resets the registers,
+     * program counters and statuses of all lanes.
+     * @param image the memory contents - at most 256 bytes, missing bytes are 0
+     */
+    public void load(byte[] image) {
+        for (int address = 0; address < NUMBER_OF_CELLS; address++) {
+            byte value = (address < image.length) ? image[address] : 0;
+            byte[] cell = memory[address];
+            for (int l = 0; l < lanes; l++) {
+                cell[l] = value;
+            }
+        }
+        reset();
+    }
+
+    /**
+     * Zeroes the registers and program counters of all lanes and makes them
+     * runnable again. The memory is left untouched.
+     */
+    public void reset() {
+        for (int r = 0; r < NUMBER_OF_REGISTERS; r++) {
+            byte[] register = registers[r];
+            for (int l = 0; l < lanes; l++) {
+                register[l] = 0;
+            }
+        }
+        for (int l = 0; l < lanes; l++) {
+            programCounters[l] = 0;
+            statuses[l] = FastProcessor.STEP_OK;
+            instructionCounts[l] = 0;
+        }
+    }
+
+    public byte getMemory(int lane, int address) {
+        return memory[address][lane];
+    }
+
+    public void setMemory(int lane, int address, byte value) {
+        memory[address][lane] = value;
+    }
+
+    public byte getRegister(int lane, int registerIndex) {
+        return registers[registerIndex][lane];
+    }
+
+    public void setRegister(int lane, int registerIndex, byte value) {
+        registers[registerIndex][lane] = value;
+    }
+
+    /**
+     * Returns a copy of a lane's registers.
+     * @param lane the lane
+     * @return the values of the 16 registers
+     */
+    public byte[] getRegisters(int lane) {
+        byte[] result = new byte[NUMBER_OF_REGISTERS];
+        for (int r = 0; r < NUMBER_OF_REGISTERS; r++) {
+            result[r] = registers[r][lane];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of a lane's memory.
+     * @param lane the lane
+     * @return the contents of the 256 memory cells
+     */
+    public byte[] getMemory(int lane) {
+        byte[] result = new byte[NUMBER_OF_CELLS];
+        for (int address = 0; address < NUMBER_OF_CELLS; address++) {
+            result[address] = memory[address][lane];
+        }
+        return result;
+    }
+
+    public int getProgramCounter(int lane) {
+        return programCounters[lane];
+    }
+
+    /**
+     * Returns FastProcessor.STEP_OK while the lane is running, or the
+     * FastProcessor.STEP_* constant the lane stopped with.
+     * @param lane the lane
+     * @return the lane's status
+     */
+    public int getStatus(int lane) {
+        return statuses[lane];
+    }
+
+    public long getInstructionCount(int lane) {
+        return instructionCounts[lane];
+    }
+
+    /**
+     * Returns the number of lanes that have neither halted nor failed.
+     * @return the number of running lanes
+     */
+    public int getActiveLanes() {
+        int active = 0;
+        for (int l = 0; l < lanes; l++) {
+            if (statuses[l] == FastProcessor.STEP_OK) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Executes steps until every lane has stopped or maxSteps steps have been
+     * executed.
+     * @param maxSteps the maximum number of instructions each lane may execute
+     * @return the number of lanes that are still running
+     */
+    public int run(long maxSteps) {
+        int active = getActiveLanes();
+        for (long i = 0; (i < maxSteps) && (active > 0); i++) {
+            active = step();
+        }
+        return active;
+    }
+
+    /**
+     * Executes one instruction in every running lane.
+     * @return the number of lanes that are still running
+     */
+    public int step() {
+        int active = 0;
+        int first = -1;
+        boolean converged = true;
+        for (int l = 0; l < lanes; l++) {
+            if (statuses[l] == FastProcessor.STEP_OK) {
+                mask[l] = -1;
+                if (first < 0) {
+                    first = l;
+                } else if (programCounters[l] != programCounters[first]) {
+                    converged = false;
+                }
+                active++;
+            } else {
+                mask[l] = 0;
+            }
+        }
+        if (active == 0) {
+            return 0;
+        }
+        if (converged) {
+            int pc = programCounters[first];
+            int word = fetch(first, pc);
+            if (isUniform(pc, word)) {
+                executeAll(pc, word);
+                return getActiveLanes();
+            }
+        }
+        sortByProgramCounter();
+        for (int pc = 0; pc < NUMBER_OF_CELLS; pc++) {
+            int start = groupStart[pc];
+            int end = groupEnd[pc];
+            // lanes at the same address hold the same instruction unless the program modified itself
+            while (start < end) {
+                int word = fetch(sorted[start], pc);
+                int n = 0;
+                int remaining = start;
+                for (int i = start; i < end; i++) {
+                    int l = sorted[i];
+                    if (fetch(l, pc) == word) {
+                        group[n++] = l;
+                    } else {
+                        sorted[remaining++] = l;
+                    }
+                }
+                executeGroup(pc, word, n);
+                end = remaining;
+            }
+        }
+        return getActiveLanes();
+    }
+
+    /**
+     * Sorts the running lanes by program counter: afterwards the lanes whose
+     * next instruction is at pc are sorted[groupStart[pc]] up to
+     * sorted[groupEnd[pc] - 1].
+     */
+    private void sortByProgramCounter() {
+        for (int pc = 0; pc <= NUMBER_OF_CELLS; pc++) {
+            groupStart[pc] = 0;
+        }
+        for (int l = 0; l < lanes; l++) {
+            if (mask[l] != 0) {
+                groupStart[programCounters[l] + 1]++;
+            }
+        }
+        for (int pc = 0; pc < NUMBER_OF_CELLS; pc++) {
+            groupStart[pc + 1] += groupStart[pc];
+            groupEnd[pc] = groupStart[pc];
+        }
+        for (int l = 0; l < lanes; l++) {
+            if (mask[l] != 0) {
+                sorted[groupEnd[programCounters[l]]++] = l;
+            }
+        }
+    }
+
+    private int fetch(int lane, int pc) {
+        return ((memory[pc][lane] & 0xFF) << 8) | (memory[(pc + 1) & 0xFF][lane] & 0xFF);
+    }
+
+    private boolean isUniform(int pc, int word) {
+        byte[] byte1 = memory[pc];
+        byte[] byte2 = memory[(pc + 1) & 0xFF];
+        byte b1 = (byte) (word >>> 8);
+        byte b2 = (byte) word;
+        for (int l = 0; l < lanes; l++) {
+            if ((((byte1[l] ^ b1) | (byte2[l] ^ b2)) & mask[l]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes an instruction in the lanes selected by mask, which are known
+     * to share the same program counter and to hold the same instruction.
+     * The loops run over all lanes and blend each result with the old value
+     * through the mask, so that they stay free of branches.
+     */
+    private void executeAll(int pc, int word) {
+        byte[] rr = registers[(word >>> 8) & 0xF];
+        byte[] rs = registers[(word >>> 4) & 0xF];
+        byte[] rt = registers[word & 0xF];
+        int operand = word & 0xFF;
+        int next = (pc + 2) & 0xFF;
+        switch (word >>> 12) {
+            case 0x1: {
+                byte[] src = memory[operand];
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | (src[l] & mask[l]));
+                }
+                break;
+            }
+            case 0x2:
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | (operand & mask[l]));
+                }
+                break;
+            case 0x3: {
+                byte[] dest = memory[operand];
+                for (int l = 0; l < lanes; l++) {
+                    dest[l] = (byte) ((dest[l] & ~mask[l]) | (rr[l] & mask[l]));
+                }
+                break;
+            }
+            case 0x4:
+                for (int l = 0; l < lanes; l++) {
+                    rt[l] = (byte) ((rt[l] & ~mask[l]) | (rs[l] & mask[l]));
+                }
+                break;
+            case 0x5: {
+                boolean overflow = false;
+                for (int l = 0; l < lanes; l++) {
+                    int sum = rs[l] + rt[l];
+                    overflow |= ((sum < -128) | (sum > 127)) & (mask[l] != 0);
+                }
+                if (overflow) {
+                    executeAllAsGroup(pc, word);
+                    return;
+                }
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | ((rs[l] + rt[l]) & mask[l]));
+                }
+                break;
+            }
+            case 0x6:
+                executeAllAsGroup(pc, word);
+                return;
+            case 0x7:
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | ((rs[l] | rt[l]) & mask[l]));
+                }
+                break;
+            case 0x8:
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | ((rs[l] & rt[l]) & mask[l]));
+                }
+                break;
+            case 0x9:
+                for (int l = 0; l < lanes; l++) {
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | ((rs[l] ^ rt[l]) & mask[l]));
+                }
+                break;
+            case 0xA: {
+                int times = word & 7;
+                for (int l = 0; l < lanes; l++) {
+                    int value = rr[l] & 0xFF;
+                    rr[l] = (byte) ((rr[l] & ~mask[l]) | (((value >>> times) | (value << (8 - times))) & mask[l]));
+                }
+                break;
+            }
+            case 0xB: {
+                byte[] r0 = registers[0];
+                for (int l = 0; l < lanes; l++) {
+                    if (mask[l] != 0) {
+                        programCounters[l] = (rr[l] == r0[l]) ? operand : next;
+                        instructionCounts[l]++;
+                    }
+                }
+                return;
+            }
+            case 0xC:
+                for (int l = 0; l < lanes; l++) {
+                    if (mask[l] != 0) {
+                        statuses[l] = FastProcessor.STEP_HALT;
+                        instructionCounts[l]++;
+                    }
+                }
+                return;
+            default:
+                for (int l = 0; l < lanes; l++) {
+                    if (mask[l] != 0) {
+                        statuses[l] = FastProcessor.STEP_MALFORMED_INSTRUCTION;
+                        instructionCounts[l]++;
+                    }
+                }
+                return;
+        }
+        for (int l = 0; l < lanes; l++) {
+            if (mask[l] != 0) {
+                programCounters[l] = next;
+                instructionCounts[l]++;
+            }
+        }
+    }
+
+    private void executeAllAsGroup(int pc, int word) {
+        int n = 0;
+        for (int l = 0; l < lanes; l++) {
+            if (mask[l] != 0) {
+                group[n++] = l;
+            }
+        }
+        executeGroup(pc, word, n);
+    }
+
+    /**
+     * Executes an instruction in the first n lanes listed in group, which all
+     * share the same program counter and hold the same instruction.
+     */
+    private void executeGroup(int pc, int word, int n) {
+        byte[] rr = registers[(word >>> 8) & 0xF];
+        byte[] rs = registers[(word >>> 4) & 0xF];
+        byte[] rt = registers[word & 0xF];
+        int operand = word & 0xFF;
+        int next = (pc + 2) & 0xFF;
+        switch (word >>> 12) {
+            case 0x1: {
+                byte[] src = memory[operand];
+                for (int i = 0; i < n; i++) {
+                    rr[group[i]] = src[group[i]];
+                }
+                break;
+            }
+            case 0x2:
+                for (int i = 0; i < n; i++) {
+                    rr[group[i]] = (byte) operand;
+                }
+                break;
+            case 0x3: {
+                byte[] dest = memory[operand];
+                for (int i = 0; i < n; i++) {
+                    dest[group[i]] = rr[group[i]];
+                }
+                break;
+            }
+            case 0x4:
+                for (int i = 0; i < n; i++) {
+                    rt[group[i]] = rs[group[i]];
+                }
+                break;
+            case 0x5:
+                for (int i = 0; i < n; i++) {
+                    int l = group[i];
+                    int sum = rs[l] + rt[l];
+                    if ((sum < -128) || (sum > 127)) {
+                        statuses[l] = FastProcessor.STEP_OVERFLOW;
+                    } else {
+                        rr[l] = (byte) sum;
+                    }
+                }
+                break;
+            case 0x6:
+                for (int i = 0; i < n; i++) {
+                    int l = group[i];
+                    int sum = FastProcessor.addFloats(rs[l] & 0xFF, rt[l] & 0xFF);
+                    if (sum < 0) {
+                        statuses[l] = FastProcessor.STEP_OVERFLOW;
+                    } else {
+                        rr[l] = (byte) sum;
+                    }
+                }
+                break;
+            case 0x7:
+                for (int i = 0; i < n; i++) {
+                    rr[group[i]] = (byte) (rs[group[i]] | rt[group[i]]);
+                }
+                break;
+            case 0x8:
+                for (int i = 0; i < n; i++) {
+                    rr[group[i]] = (byte) (rs[group[i]] & rt[group[i]]);
+                }
+                break;
+            case 0x9:
+                for (int i = 0; i < n; i++) {
+                    rr[group[i]] = (byte) (rs[group[i]] ^ rt[group[i]]);
+                }
+                break;
+            case 0xA: {
+                int times = word & 7;
+                for (int i = 0; i < n; i++) {
+                    int value = rr[group[i]] & 0xFF;
+                    rr[group[i]] = (byte) ((value >>> times) | (value << (8 - times)));
+                }
+                break;
+            }
+            case 0xB: {
+                byte[] r0 = registers[0];
+                for (int i = 0; i < n; i++) {
+                    int l = group[i];
+                    programCounters[l] = (rr[l] == r0[l]) ? operand : next;
+                    instructionCounts[l]++;
+                }
+                return;
+            }
+            case 0xC:
+                for (int i = 0; i < n; i++) {
+                    statuses[group[i]] = FastProcessor.STEP_HALT;
+                    instructionCounts[group[i]]++;
+                }
+                return;
+            default:
+                for (int i = 0; i < n; i++) {
+                    statuses[group[i]] = FastProcessor.STEP_MALFORMED_INSTRUCTION;
+                    instructionCounts[group[i]]++;
+                }
+                return;
+        }
+        for (int i = 0; i < n; i++) {
+            int l = group[i];
+            if (statuses[l] == FastProcessor.STEP_OK) {
+                programCounters[l] = next;
+            }
+            instructionCounts[l]++;
+        }
+    }
+}
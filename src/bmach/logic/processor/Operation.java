@@ -0,0 +1,332 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+/**
+ * A compiled instruction: the operation of an instruction word with its
+ * operands already resolved to register indices and addresses, used by
+ * FastProcessor in MODE_COMPILED.
+ * Operations are immutable and shared; forWord() creates the operation of
+ * each word the first time it is requested.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+abstract class Operation {
+
+    private final static Operation[] OPERATIONS = new Operation[65536];
+    private final int word;
+
+    Operation(int word) {
+        this.word = word;
+    }
+
+    int getWord() {
+        return word;
+    }
+
+    /**
+     * Executes this operation on the processor's primitive state.
+     * @param p the processor
+     * @return one of FastProcessor's STEP_* constants
+     */
+    abstract int execute(FastProcessor p);
+
+    static Operation forWord(int word) {
+        Operation operation = OPERATIONS[word];
+        if (operation == null) {
+            operation = create(word);
+            OPERATIONS[word] = operation;
+        }
+        return operation;
+    }
+
+    private static Operation create(int word) {
+        int r = (word >>> 8) & 0xF;
+        int s = (word >>> 4) & 0xF;
+        int t = word & 0xF;
+        int operand = word & 0xFF;
+        switch (word >>> 12) {
+            case 0x1:
+                return new LoadMemory(word, r, operand);
+            case 0x2:
+                return new LoadValue(word, r, (byte) operand);
+            case 0x3:
+                return new Store(word, r, operand);
+            case 0x4:
+                return new Move(word, s, t);
+            case 0x5:
+                return new Add(word, r, s, t);
+            case 0x6:
+                return new AddFloat(word, r, s, t);
+            case 0x7:
+                return new Or(word, r, s, t);
+            case 0x8:
+                return new And(word, r, s, t);
+            case 0x9:
+                return new Xor(word, r, s, t);
+            case 0xA:
+                return new Rotate(word, r, t & 7);
+            case 0xB:
+                return new Jump(word, r, operand);
+            case 0xC:
+                return new Halt(word);
+            default:
+                return new Invalid(word);
+        }
+    }
+
+    private static int next(FastProcessor p) {
+        p.pc = (p.pc + 2) & 0xFF;
+        return FastProcessor.STEP_OK;
+    }
+
+    private static class LoadMemory extends Operation {
+
+        private final int dest;
+        private final int src;
+
+        LoadMemory(int word, int dest, int src) {
+            super(word);
+            this.dest = dest;
+            this.src = src;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = (src == p.inputPort) ? p.readInput() : p.memory[src];
+            return next(p);
+        }
+    }
+
+    private static class LoadValue extends Operation {
+
+        private final int dest;
+        private final byte value;
+
+        LoadValue(int word, int dest, byte value) {
+            super(word);
+            this.dest = dest;
+            this.value = value;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = value;
+            return next(p);
+        }
+    }
+
+    private static class Store extends Operation {
+
+        private final int src;
+        private final int dest;
+
+        Store(int word, int src, int dest) {
+            super(word);
+            this.src = src;
+            this.dest = dest;
+        }
+
+        int execute(FastProcessor p) {
+            if (dest == p.outputPort) {
+                p.writeOutput(p.registers[src]);
+            } else {
+                p.writeMemory(dest, p.registers[src]);
+            }
+            return next(p);
+        }
+    }
+
+    private static class Move extends Operation {
+
+        private final int src;
+        private final int dest;
+
+        Move(int word, int src, int dest) {
+            super(word);
+            this.src = src;
+            this.dest = dest;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = p.registers[src];
+            return next(p);
+        }
+    }
+
+    private static class Add extends Operation {
+
+        private final int dest;
+        private final int src1;
+        private final int src2;
+
+        Add(int word, int dest, int src1, int src2) {
+            super(word);
+            this.dest = dest;
+            this.src1 = src1;
+            this.src2 = src2;
+        }
+
+        int execute(FastProcessor p) {
+            int sum = p.registers[src1] + p.registers[src2];
+            if ((sum < -128) || (sum > 127)) {
+                return FastProcessor.STEP_OVERFLOW;
+            }
+            p.registers[dest] = (byte) sum;
+            return next(p);
+        }
+    }
+
+    private static class AddFloat extends Operation {
+
+        private final int dest;
+        private final int src1;
+        private final int src2;
+
+        AddFloat(int word, int dest, int src1, int src2) {
+            super(word);
+            this.dest = dest;
+            this.src1 = src1;
+            this.src2 = src2;
+        }
+
+        int execute(FastProcessor p) {
+            int sum = FastProcessor.addFloats(p.registers[src1] & 0xFF, p.registers[src2] & 0xFF);
+            if (sum < 0) {
+                return FastProcessor.STEP_OVERFLOW;
+            }
+            p.registers[dest] = (byte) sum;
+            return next(p);
+        }
+    }
+
+    private static class Or extends Operation {
+
+        private final int dest;
+        private final int src1;
+        private final int src2;
+
+        Or(int word, int dest, int src1, int src2) {
+            super(word);
+            this.dest = dest;
+            this.src1 = src1;
+            this.src2 = src2;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = (byte) (p.registers[src1] | p.registers[src2]);
+            return next(p);
+        }
+    }
+
+    private static class And extends Operation {
+
+        private final int dest;
+        private final int src1;
+        private final int src2;
+
+        And(int word, int dest, int src1, int src2) {
+            super(word);
+            this.dest = dest;
+            this.src1 = src1;
+            this.src2 = src2;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = (byte) (p.registers[src1] & p.registers[src2]);
+            return next(p);
+        }
+    }
+
+    private static class Xor extends Operation {
+
+        private final int dest;
+        private final int src1;
+        private final int src2;
+
+        Xor(int word, int dest, int src1, int src2) {
+            super(word);
+            this.dest = dest;
+            this.src1 = src1;
+            this.src2 = src2;
+        }
+
+        int execute(FastProcessor p) {
+            p.registers[dest] = (byte) (p.registers[src1] ^ p.registers[src2]);
+            return next(p);
+        }
+    }
+
+    private static class Rotate extends Operation {
+
+        private final int register;
+        private final int times;
+
+        Rotate(int word, int register, int times) {
+            super(word);
+            this.register = register;
+            this.times = times;
+        }
+
+        int execute(FastProcessor p) {
+            int value = p.registers[register] & 0xFF;
+            p.registers[register] = (byte) ((value >>> times) | (value << (8 - times)));
+            return next(p);
+        }
+    }
+
+    private static class Jump extends Operation {
+
+        private final int register;
+        private final int target;
+
+        Jump(int word, int register, int target) {
+            super(word);
+            this.register = register;
+            this.target = target;
+        }
+
+        int execute(FastProcessor p) {
+            if (p.registers[register] == p.registers[0]) {
+                p.pc = target;
+                return FastProcessor.STEP_OK;
+            }
+            return next(p);
+        }
+    }
+
+    private static class Halt extends Operation {
+
+        Halt(int word) {
+            super(word);
+        }
+
+        int execute(FastProcessor p) {
+            p.reachEnd();
+            return FastProcessor.STEP_HALT;
+        }
+    }
+
+    private static class Invalid extends Operation {
+
+        Invalid(int word) {
+            super(word);
+        }
+
+        int execute(FastProcessor p) {
+            return FastProcessor.STEP_MALFORMED_INSTRUCTION;
+        }
+    }
+}
@@ -17,18 +17,21 @@
 package bmach.logic.processor;
 
 import bmach.logic.machine.IMachine;
+import bmach.logic.machine.IOPorts;
 import bmach.logic.memory.IMainMemory;
 import bmach.logic.memory.IMemoryAddress;
 import bmach.logic.memory.MemoryAddress;
+import bmach.logic.memory.PagedMemory;
 import bmach.logic.programcounter.IProgramCounter;
 import bmach.logic.programcounter.ProgramCounter;
 import bmach.logic.registers.IRegister;
 import bmach.logic.registers.IRegisterAddress;
 import bmach.logic.registers.Register;
 import bmach.logic.registers.RegisterAddress;
+import bmach.logic.trace.ITraceRecorder;
+import bmach.logic.trace.TraceRecord;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import util.binary.bitpattern.BitPattern;
@@ -39,27 +42,62 @@ import util.binary.bitpattern.IBitPattern;
 import util.patterns.observer.IObserver;
 
 /**
+ * Executes the instructions held in a machine's memory. With memories larger
+ * than 256 cells the program counter covers the whole memory and the wide
+ * LOAD (0xD), STORE (0xE) and JUMP (0xF) instructions, described in
+ * MachineProfile, are executed; the other instructions still address the
+ * first 256 cells. LOAD and STORE instructions that address one of the
+ * machine's IOPorts read its input or write its output instead.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
 public class Processor implements IProcessor {
 
+    /**
+     * The operand addresses of the instructions, shared by all processors.
+     */
+    private final static IMemoryAddress[] MEMORY_ADDRESSES;
+
+    static {
+        MEMORY_ADDRESSES = new IMemoryAddress[256];
+        for (int i = 0; i < MEMORY_ADDRESSES.length; i++) {
+            MEMORY_ADDRESSES[i] = new MemoryAddress(i);
+        }
+    }
     private IMachine machine;
-    private IProgramCounter programCounter;
-    private HashMap<IRegisterAddress, IRegister> registers;
+    private ProgramCounter programCounter;
+    private int numberOfCells;
+    private boolean wideInstructions;
+    private IOPorts ioPorts;
+    private int inputPort;
+    private int outputPort;
+    private IRegister[] registers;
+    private IRegisterAddress[] registerAddresses;
     private List<IObserver> observers;
     private ByteBitPattern zero;
-    private IRegisterAddress zeroRegisterAddress;
     private boolean hasReachedEnd;
+    private Profiler profiler;
+    private Coverage coverage;
+    private ITraceRecorder traceRecorder;
+    private boolean stepNotifications;
 
     public Processor() {
         this.machine = null;
         this.programCounter = new ProgramCounter();
-        this.registers = new HashMap<IRegisterAddress, IRegister>(16, 1.0f);
+        this.numberOfCells = PagedMemory.PAGE_SIZE;
+        this.wideInstructions = false;
+        this.ioPorts = null;
+        this.inputPort = IOPorts.NONE;
+        this.outputPort = IOPorts.NONE;
+        this.registers = new IRegister[16];
         this.observers = new ArrayList<IObserver>();
         this.hasReachedEnd = false;
+        this.profiler = null;
+        this.coverage = null;
+        this.traceRecorder = null;
+        this.stepNotifications = true;
         this.zero = new ByteBitPattern();
-        this.zeroRegisterAddress = new RegisterAddress("0x" + Integer.toHexString(0));
+        this.registerAddresses = new IRegisterAddress[16];
         try{
             zero.setValue(0);
         }catch(Exception e){
@@ -70,145 +108,229 @@ public class Processor implements IProcessor {
     private void generateRegisters() {
         for (int i = 0; i < 16; i++) {
             IRegisterAddress address = new RegisterAddress("0x" + Integer.toHexString(i));
-            registers.put(address, new Register(address));
+            registerAddresses[i] = address;
+            registers[i] = new Register(address);
         }
     }
 
     public IRegister getRegister(int registerIndex) {
-        return registers.get(new RegisterAddress("0x" + Integer.toHexString(registerIndex)));
+        if ((registerIndex >= 0) && (registerIndex < registers.length)) {
+            return registers[registerIndex];
+        }
+        return null;
+    }
+
+    public int getRegisterValue(int registerIndex) {
+        return registers[registerIndex].getUnsigned();
+    }
+
+    public void setRegisterValue(int registerIndex, int value) {
+        registers[registerIndex].setBits(value);
     }
 
     public int getNumberOfRegisters() {
-        return this.registers.size();
+        return this.registers.length;
     }
 
     public IProgramCounter getProgramCounter() {
         return this.programCounter;
     }
 
+    /**
+     * Sets the address of the next instruction to be executed and clears the
+     * halted state, so that execution can resume from there.
+     * @param address the new value of the program counter
+     */
+    public void setProgramCounterValue(int address) {
+        this.programCounter.jumpTo(address);
+        this.hasReachedEnd = false;
+    }
+
     public boolean hasReachedEnd() {
         return this.hasReachedEnd;
     }
 
+    /**
+     * Attaches a profiler that counts every executed instruction.
+     * @param profiler the profiler, or null to stop profiling
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Attaches the coverage that records the address of every executed
+     * instruction.
+     * @param coverage the coverage, or null to stop recording
+     */
+    public void setCoverage(Coverage coverage) {
+        this.coverage = coverage;
+    }
+
+    public Coverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Attaches a recorder that receives every executed instruction.
+     * @param traceRecorder the recorder, or null to stop tracing
+     */
+    public void setTraceRecorder(ITraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    public ITraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Sets whether execNext() notifies the observers of every executed
+     * instruction. Machine turns the notifications off during turbo runs.
+     * @param stepNotifications false to execute instructions silently
+     */
+    public void setStepNotifications(boolean stepNotifications) {
+        this.stepNotifications = stepNotifications;
+    }
+
+    public boolean getStepNotifications() {
+        return stepNotifications;
+    }
+
     public void init(IMachine machine) {
         this.machine = machine;
-        this.observers.add(machine);
-        this.programCounter.reset();
+        addObserver(machine);
+        this.numberOfCells = machine.getMemory().getNumberOfCells();
+        this.wideInstructions = numberOfCells > PagedMemory.PAGE_SIZE;
+        this.programCounter.setAddressSpace(numberOfCells);
+        this.ioPorts = machine.getIOPorts();
+        this.inputPort = ioPorts.getInputPort();
+        this.outputPort = ioPorts.getOutputPort();
         this.hasReachedEnd = false;
-        for (Iterator<IRegisterAddress> it = registers.keySet().iterator(); it.hasNext();) {
-            IRegisterAddress address = it.next();
-            IRegister register = registers.get(address);
-            register.setContentValue("00000000");
+        for (int i = 0; i < registers.length; i++) {
+            registers[i].setBits(0);
         }
         notifyObservers(new ProcessorNotificationData("init"));
     }
 
     public void execNext() throws MalformedProcessorInstructionException, BitPatternOverflowException {
         IMainMemory memory = this.machine.getMemory();
-        IMemoryAddress instructionAddress = programCounter.get();
-        IMemoryAddress instructionAddressPlusOne = new MemoryAddress("0x" + Integer.toHexString(Integer.parseInt(instructionAddress.toHexString().substring(2), 16) + 1));
-
-        IBitPattern byte1 = memory.get(instructionAddress).getContent();
-        IBitPattern byte2 = memory.get(instructionAddressPlusOne).getContent();
-
-        String opCode = byte1.toBinaryString().substring(0, 4);
-        String register = byte1.toBinaryString().substring(4, 8);
-
-        IMemoryAddress pcVal = programCounter.get();
-
-        if (opCode.equals("0001") || opCode.equals("0010") || opCode.equals("0011") || opCode.equals("1011")) {
-            if (opCode.equals("0001")) {// 0x1 : LOAD from memory
-                IMemoryAddress src = new MemoryAddress(byte2.toBinaryString());
-                IRegisterAddress dest = new RegisterAddress(register);
-                load(src, dest);
-            } else if (opCode.equals("0010")) {// 0x2 : LOAD bit pattern
-                IRegisterAddress dest = new RegisterAddress(register);
-                load(byte2, dest);
-            } else if (opCode.equals("0011")) {// 0x3 : STORE to memory
-                IRegisterAddress src = new RegisterAddress(register);
-                IMemoryAddress dest = new MemoryAddress(byte2.toBinaryString());
-                store(src, dest);
-            } else {// 0xB : JUMP to target if address contents == contents at register 0
-                IRegisterAddress address = new RegisterAddress(register);
-                IMemoryAddress target = new MemoryAddress(byte2.toBinaryString());
-                jump(address, target);
+        int pcVal = programCounter.getIndex();
+
+        IBitPattern byte1 = memory.get(pcVal).getContent();
+        IBitPattern byte2 = memory.get((pcVal + 1) % numberOfCells).getContent();
+
+        DecodedInstruction instruction = InstructionDecoder.decode(byte1, byte2);
+        IRegisterAddress register = registerAddresses[instruction.getRegister()];
+        IRegisterAddress op1 = registerAddresses[instruction.getOperand1()];
+        IRegisterAddress op2 = registerAddresses[instruction.getOperand2()];
+        IMemoryAddress operand = MEMORY_ADDRESSES[instruction.getOperand()];
+
+        int oldValue = (traceRecorder == null) ? 0 : readDestination(instruction.getWord());
+        int handler = instruction.getHandler();
+        int wideOperand = 0;
+        if (wideInstructions && (instruction.getOpCode() >= 0xD)) {
+            handler = instruction.getOpCode();
+            wideOperand = readWideOperand(memory, pcVal);
+        }
+
+        try {
+            switch (handler) {
+                case 0x1: // LOAD from memory
+                    load(operand, register);
+                    break;
+                case 0x2: // LOAD bit pattern
+                    load(byte2, register);
+                    break;
+                case 0x3: // STORE to memory
+                    store(register, operand);
+                    break;
+                case 0x4: // MOVE from S to T
+                    move(op1, op2);
+                    break;
+                case 0x5: // ADD S and T and save to R
+                    add(op1, op2, register);
+                    break;
+                case 0x6: // ADD floats in S and T and save to R
+                    addFloat(op1, op2, register);
+                    break;
+                case 0x7: // OR S and T and save to R
+                    or(op1, op2, register);
+                    break;
+                case 0x8: // AND S and T and save to R
+                    and(op1, op2, register);
+                    break;
+                case 0x9: // XOR S and T and save to R
+                    xor(op1, op2, register);
+                    break;
+                case 0xA: // ROTATE R right X times
+                    rotate(register, instruction.getOperand2());
+                    break;
+                case 0xB: // JUMP to target if address contents == contents at register 0
+                    jump(register, operand);
+                    break;
+                case 0xC: // HALT
+                    hasReachedEnd = true;
+                    halt();
+                    break;
+                case 0xD: // LOAD from a 16-bit address
+                    loadWide(register, wideOperand);
+                    break;
+                case 0xE: // STORE to a 16-bit address
+                    storeWide(register, wideOperand);
+                    break;
+                case 0xF: // JUMP to a 16-bit address if contents at register == contents at register 0
+                    jumpWide(register, wideOperand);
+                    break;
+                default:
+                    BitPattern malformed = new BitPattern(16);
+                    malformed.setBits(instruction.getWord());
+                    MalformedProcessorInstructionException mpie = new MalformedProcessorInstructionException(malformed);
+                    notifyObservers(new ProcessorNotificationData(mpie));
+                    throw mpie;
             }
+        } catch (BitPatternOverflowException boe) {
+            notifyObservers(new ProcessorNotificationData(boe));
+            throw boe;
+        }
 
-        } else {
-            String op1 = byte2.toBinaryString().substring(0, 4);
-            String op2 = byte2.toBinaryString().substring(4, 8);
-
-            if (opCode.equals("0100")) {// 0x4 : MOVE from R to S
-                IRegisterAddress src = new RegisterAddress(op1);
-                IRegisterAddress dest = new RegisterAddress(op2);
-                move(src, dest);
-            } else if (opCode.equals("0101")) {// 0x5 : ADD S and T ans save to R
-                try {
-                    IRegisterAddress src1 = new RegisterAddress(op1);
-                    IRegisterAddress src2 = new RegisterAddress(op2);
-                    IRegisterAddress dest = new RegisterAddress(register);
-                    add(src1, src2, dest);
-                } catch (BitPatternOverflowException boe) {
-                    notifyObservers(new ProcessorNotificationData(boe));
-                    throw boe;
-                }
-            } else if (opCode.equals("0110")) {// 0x6 : ADD floats in S and T ans save to R
-                try {
-                    IRegisterAddress src1 = new RegisterAddress(op1);
-                    IRegisterAddress src2 = new RegisterAddress(op2);
-                    IRegisterAddress dest = new RegisterAddress(register);
-                    addFloat(src1, src2, dest);
-                } catch (BitPatternOverflowException boe) {
-                    notifyObservers(new ProcessorNotificationData(boe));
-                    throw boe;
-                }
-            } else if (opCode.equals("0111")) {// 0x7 : OR S and T ans save to R
-                try {
-                    IRegisterAddress src1 = new RegisterAddress(op1);
-                    IRegisterAddress src2 = new RegisterAddress(op2);
-                    IRegisterAddress dest = new RegisterAddress(register);
-                    or(src1, src2, dest);
-                } catch (BitPatternOverflowException boe) {
-                    notifyObservers(new ProcessorNotificationData(boe));
-                    throw boe;
-                }
-            } else if (opCode.equals("1000")) {// 0x8 : AND S and T ans save to R
-                try {
-                    IRegisterAddress src1 = new RegisterAddress(op1);
-                    IRegisterAddress src2 = new RegisterAddress(op2);
-                    IRegisterAddress dest = new RegisterAddress(register);
-                    and(src1, src2, dest);
-                } catch (BitPatternOverflowException boe) {
-                    notifyObservers(new ProcessorNotificationData(boe));
-                    throw boe;
-                }
-            } else if (opCode.equals("1001")) {// 0x9 : XOR S and T ans save to R
-                try {
-                    IRegisterAddress src1 = new RegisterAddress(op1);
-                    IRegisterAddress src2 = new RegisterAddress(op2);
-                    IRegisterAddress dest = new RegisterAddress(register);
-                    xor(src1, src2, dest);
-                } catch (BitPatternOverflowException boe) {
-                    notifyObservers(new ProcessorNotificationData(boe));
-                    throw boe;
+        // coverage, profiles and traces only cover the instructions in the first 256 cells
+        if (pcVal < PagedMemory.PAGE_SIZE) {
+            if (coverage != null) {
+                coverage.record(pcVal);
+            }
+            if (profiler != null) {
+                if (handler >= 0xD) {
+                    profiler.record(pcVal, instruction.getWord(), wideOperand, programCounter.getIndex());
+                } else {
+                    profiler.record(pcVal, instruction.getWord(), programCounter.getIndex());
                 }
-            } else if (opCode.equals("1010")) {// 0xA : ROTATE R right X times
-                IRegisterAddress address = new RegisterAddress(register);
-                int times = Integer.parseInt(op2, 2);
-                rotate(address, times);
-
-            } else if (opCode.equals("1100")) {// 0xC : HALT
-                hasReachedEnd = true;
-                halt();
-            } else {
-                MalformedProcessorInstructionException mpie = new MalformedProcessorInstructionException(new BitPattern(16, byte1.toBinaryString() + byte2.toBinaryString()));
-                notifyObservers(new ProcessorNotificationData(mpie));
-                throw mpie;
+            }
+            if (traceRecorder != null) {
+                traceRecorder.record(pcVal, instruction.getWord(), oldValue, readDestination(instruction.getWord()), programCounter.getIndex());
             }
         }
 
-        notifyObservers(new ProcessorNotificationData(new BitPattern(24, pcVal.toBinaryString() + byte1.toBinaryString() + byte2.toBinaryString())));
+        if (stepNotifications) {
+            BitPattern executed = new BitPattern(wideInstructions ? 32 : 24);
+            executed.setBits((pcVal << 16) | instruction.getWord());
+            notifyObservers(new ProcessorNotificationData(executed));
+        }
+
+    }
 
+    private int readDestination(int word) {
+        int kind = TraceRecord.getDestinationKind(word);
+        int index = TraceRecord.getDestinationIndex(word);
+        if (kind == TraceRecord.DESTINATION_REGISTER) {
+            return registers[index].getUnsigned();
+        } else if (kind == TraceRecord.DESTINATION_MEMORY) {
+            return machine.getMemory().getValue(index);
+        }
+        return 0;
     }
 
     public void halt() {
@@ -217,79 +339,112 @@ public class Processor implements IProcessor {
     }
 
     public void load(IMemoryAddress src, IRegisterAddress dest) {
-        String newValue = machine.getMemory().get(src).getContent().toBinaryString();
-        registers.get(dest).setContentValue(newValue);
-        programCounter.inc();
+        if (src.getUnsigned() == inputPort) {
+            registers[dest.getUnsigned()].setBits(ioPorts.read());
+        } else {
+            registers[dest.getUnsigned()].copyFrom(machine.getMemory().get(src).getContent());
+        }
+        programCounter.advance();
     }
 
     public void load(IBitPattern value, IRegisterAddress dest) {
-        registers.get(dest).setContentValue(value.toBinaryString());
-        programCounter.inc();
+        registers[dest.getUnsigned()].copyFrom(value);
+        programCounter.advance();
     }
 
     public void store(IRegisterAddress src, IMemoryAddress dest) {
-        String newValue = registers.get(src).getContent().toBinaryString();
-        machine.getMemory().get(dest).setContentValue(newValue);
-        programCounter.inc();
+        if (dest.getUnsigned() == outputPort) {
+            ioPorts.write(registers[src.getUnsigned()].getUnsigned());
+        } else {
+            machine.getMemory().get(dest).copyFrom(registers[src.getUnsigned()].getContent());
+        }
+        programCounter.advance();
     }
 
     public void move(IRegisterAddress src, IRegisterAddress dest) {
-        String newValue = registers.get(src).getContent().toBinaryString();
-        registers.get(dest).setContentValue(newValue);
-        programCounter.inc();
+        registers[dest.getUnsigned()].copyFrom(registers[src.getUnsigned()].getContent());
+        programCounter.advance();
     }
 
     public void add(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
-        IBitPattern value1 = registers.get(src1).getContent();
-        IBitPattern value2 = registers.get(src2).getContent();
-        registers.get(dest).setContentValue(BitPattern.add(value1, value2).toBinaryString());
-        programCounter.inc();
+        IBitPattern value1 = registers[src1.getUnsigned()].getContent();
+        IBitPattern value2 = registers[src2.getUnsigned()].getContent();
+        registers[dest.getUnsigned()].copyFrom(BitPattern.add(value1, value2));
+        programCounter.advance();
     }
 
     public void addFloat(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
-        IBitPattern value1 = registers.get(src1).getContent();
-        IBitPattern value2 = registers.get(src2).getContent();
-        registers.get(dest).setContentValue(BitPatternUtils.addFloats(value1, value2).toBinaryString());
-        programCounter.inc();
+        IBitPattern value1 = registers[src1.getUnsigned()].getContent();
+        IBitPattern value2 = registers[src2.getUnsigned()].getContent();
+        registers[dest.getUnsigned()].copyFrom(BitPatternUtils.addFloats(value1, value2));
+        programCounter.advance();
     }
 
     public void and(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
-        IBitPattern value1 = registers.get(src1).getContent();
-        IBitPattern value2 = registers.get(src2).getContent();
-        registers.get(dest).setContentValue(BitPattern.and(value1, value2).toBinaryString());
-        programCounter.inc();
+        int value1 = registers[src1.getUnsigned()].getUnsigned();
+        int value2 = registers[src2.getUnsigned()].getUnsigned();
+        registers[dest.getUnsigned()].setBits(value1 & value2);
+        programCounter.advance();
     }
 
     public void or(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
-        IBitPattern value1 = registers.get(src1).getContent();
-        IBitPattern value2 = registers.get(src2).getContent();
-        registers.get(dest).setContentValue(BitPattern.or(value1, value2).toBinaryString());
-        programCounter.inc();
+        int value1 = registers[src1.getUnsigned()].getUnsigned();
+        int value2 = registers[src2.getUnsigned()].getUnsigned();
+        registers[dest.getUnsigned()].setBits(value1 | value2);
+        programCounter.advance();
     }
 
     public void xor(IRegisterAddress src1, IRegisterAddress src2, IRegisterAddress dest) throws BitPatternOverflowException {
-        IBitPattern value1 = registers.get(src1).getContent();
-        IBitPattern value2 = registers.get(src2).getContent();
-        registers.get(dest).setContentValue(BitPattern.xor(value1, value2).toBinaryString());
-        programCounter.inc();
+        int value1 = registers[src1.getUnsigned()].getUnsigned();
+        int value2 = registers[src2.getUnsigned()].getUnsigned();
+        registers[dest.getUnsigned()].setBits(value1 ^ value2);
+        programCounter.advance();
     }
 
     public void rotate(IRegisterAddress address, int times) {
-        IBitPattern registerContent = registers.get(address).getContent();
-        for (int i = 0; i < times; i++) {
-            registerContent.rotateRight();
-        }
-        registers.get(address).setContentValue(registerContent.toBinaryString());
-        programCounter.inc();
+        IRegister register = registers[address.getUnsigned()];
+        int length = register.getContent().length();
+        int value = register.getUnsigned();
+        int shift = times % length;
+        register.setBits((value >>> shift) | (value << (length - shift)));
+        programCounter.advance();
     }
 
     public void jump(IRegisterAddress address, IMemoryAddress target) {
-        IBitPattern op1 = registers.get(address).getContent();
-        IBitPattern op2 = registers.get(zeroRegisterAddress).getContent();
+        IBitPattern op1 = registers[address.getUnsigned()].getContent();
+        IBitPattern op2 = registers[0].getContent();
         if (op2.compareTo(op1) == 0) {
-            programCounter.set(target);
+            programCounter.jumpTo(target.getUnsigned());
+        } else {
+            programCounter.advance();
+        }
+    }
+
+    private int readWideOperand(IMainMemory memory, int pcVal) {
+        int high = memory.getValue((pcVal + 2) % numberOfCells);
+        int low = memory.getValue((pcVal + 3) % numberOfCells);
+        return ((high << 8) | low) % numberOfCells;
+    }
+
+    private void loadWide(IRegisterAddress dest, int src) {
+        registers[dest.getUnsigned()].setBits((src == inputPort) ? ioPorts.read() : machine.getMemory().getValue(src));
+        programCounter.jumpTo(programCounter.getIndex() + 4);
+    }
+
+    private void storeWide(IRegisterAddress src, int dest) {
+        if (dest == outputPort) {
+            ioPorts.write(registers[src.getUnsigned()].getUnsigned());
+        } else {
+            machine.getMemory().setValue(dest, registers[src.getUnsigned()].getUnsigned());
+        }
+        programCounter.jumpTo(programCounter.getIndex() + 4);
+    }
+
+    private void jumpWide(IRegisterAddress address, int target) {
+        if (registers[address.getUnsigned()].getUnsigned() == registers[0].getUnsigned()) {
+            programCounter.jumpTo(target);
         } else {
-            programCounter.inc();
+            programCounter.jumpTo(programCounter.getIndex() + 4);
         }
     }
 
@@ -312,13 +467,13 @@ public class Processor implements IProcessor {
 
     public void printRegistersHex(PrintStream out) {
         for (int i = 0; i < 16; i++) {
-            out.println(String.format("Register[%1$2d]: %2$s", i, registers.get(new RegisterAddress("0x" + Integer.toHexString(i))).getContent().toHexString()));
+            out.println(String.format("Register[%1$2d]: %2$s", i, registers[i].getContent().toHexString()));
         }
     }
 
     public void printRegistersBinary(PrintStream out) {
         for (int i = 0; i < 16; i++) {
-            out.println(String.format("Register[%1$2d]: %2$s", i, registers.get(new RegisterAddress("0x" + Integer.toHexString(i))).getContent().toBinaryString()));
+            out.println(String.format("Register[%1$2d]: %2$s", i, registers[i].getContent().toBinaryString()));
         }
     }
 }
@@ -0,0 +1,297 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import util.binary.bitpattern.BitPatternUtils;
+
+/**
+ * Counts the instructions executed by a processor: how many times each
+ * address and each op-code was executed, how many times each memory cell was
+ * read by LOAD or written by STORE, and how many times each JUMP went back
+ * to an earlier address. The backward jumps mark the program's loops.
+ *
+ * A profiler is attached with IProcessor.setProfiler(); while none is
+ * attached the processors do not count anything.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class Profiler {
+
+    private final static String[] OP_CODE_NAMES;
+
+    static {
+        OP_CODE_NAMES = new String[]{"UNKNOWN", "LOAD", "LOAD", "STORE", "MOVE", "ADD", "ADD FLOAT", "OR", "AND", "XOR", "ROTATE", "JUMP", "HALT", "LOAD WIDE", "STORE WIDE", "JUMP WIDE"};
+    }
+
+    /**
+     * A loop found by the profiler: the instructions between the target of a
+     * backward JUMP and the JUMP itself.
+     */
+    public static class HotLoop {
+
+        private int start;
+        private int end;
+        private long iterations;
+        private long instructions;
+
+        public HotLoop(int start, int end, long iterations, long instructions) {
+            this.start = start;
+            this.end = end;
+            this.iterations = iterations;
+            this.instructions = instructions;
+        }
+
+        /**
+         * Returns the address of the loop's first instruction.
+         * @return the target of the backward JUMP
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the address of the loop's last instruction.
+         * @return the address of the backward JUMP
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns how many times the backward JUMP was taken.
+         * @return the number of iterations
+         */
+        public long getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Returns how many instructions were executed at the loop's addresses.
+         * @return the number of instructions executed inside the loop
+         */
+        public long getInstructions() {
+            return instructions;
+        }
+    }
+    private final long[] addressCounts;
+    private final long[] opCodeCounts;
+    private final long[] cellReads;
+    private final long[] cellWrites;
+    private final long[] backEdgeCounts;
+    private final int[] backEdgeTargets;
+    private long totalInstructions;
+
+    public Profiler() {
+        this.addressCounts = new long[256];
+        this.opCodeCounts = new long[16];
+        this.cellReads = new long[256];
+        this.cellWrites = new long[256];
+        this.backEdgeCounts = new long[256];
+        this.backEdgeTargets = new int[256];
+        this.totalInstructions = 0;
+    }
+
+    /**
+     * Counts an executed instruction.
+     * @param address the address of the instruction
+     * @param word the instruction word
+     * @param nextAddress the address of the instruction executed next
+     */
+    public void record(int address, int word, int nextAddress) {
+        record(address, word, word & 0xFF, nextAddress);
+    }
+
+    /**
+     * Counts an executed instruction whose memory address is not part of the
+     * instruction word, like the wide LOAD, STORE and JUMP of extended
+     * profiles. Only the cells among the first 256 are counted.
+     * @param address the address of the instruction
+     * @param word the instruction word
+     * @param operand the address the instruction reads, writes or jumps to
+     * @param nextAddress the address of the instruction executed next
+     */
+    public void record(int address, int word, int operand, int nextAddress) {
+        totalInstructions++;
+        addressCounts[address]++;
+        opCodeCounts[word >>> 12]++;
+        switch (word >>> 12) {
+            case 0x1:
+            case 0xD:
+                if (operand < 256) {
+                    cellReads[operand]++;
+                }
+                break;
+            case 0x3:
+            case 0xE:
+                if (operand < 256) {
+                    cellWrites[operand]++;
+                }
+                break;
+            case 0xB:
+            case 0xF:
+                if ((nextAddress == operand) && (nextAddress <= address)) {
+                    backEdgeCounts[address]++;
+                    backEdgeTargets[address] = nextAddress;
+                }
+                break;
+            default:
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < 256; i++) {
+            addressCounts[i] = 0;
+            cellReads[i] = 0;
+            cellWrites[i] = 0;
+            backEdgeCounts[i] = 0;
+            backEdgeTargets[i] = 0;
+        }
+        for (int i = 0; i < 16; i++) {
+            opCodeCounts[i] = 0;
+        }
+        totalInstructions = 0;
+    }
+
+    public long getTotalInstructions() {
+        return totalInstructions;
+    }
+
+    public long getAddressCount(int address) {
+        return addressCounts[address];
+    }
+
+    public long getOpCodeCount(int opCode) {
+        return opCodeCounts[opCode];
+    }
+
+    public long getCellReads(int address) {
+        return cellReads[address];
+    }
+
+    public long getCellWrites(int address) {
+        return cellWrites[address];
+    }
+
+    /**
+     * Returns the loops executed at least once, the ones in which most
+     * instructions were executed first.
+     * @return the program's loops
+     */
+    public List<HotLoop> getHotLoops() {
+        List<HotLoop> loops = new ArrayList<HotLoop>();
+        for (int address = 0; address < 256; address++) {
+            if (backEdgeCounts[address] > 0) {
+                int start = backEdgeTargets[address];
+                long instructions = 0;
+                for (int i = start; i <= address; i++) {
+                    instructions += addressCounts[i];
+                }
+                loops.add(new HotLoop(start, address, backEdgeCounts[address], instructions));
+            }
+        }
+        Collections.sort(loops, new Comparator<HotLoop>() {
+
+            public int compare(HotLoop o1, HotLoop o2) {
+                if (o1.getInstructions() != o2.getInstructions()) {
+                    return (o1.getInstructions() > o2.getInstructions()) ? -1 : 1;
+                }
+                return o1.getStart() - o2.getStart();
+            }
+        });
+        return loops;
+    }
+
+    public void printReport(PrintStream out) {
+        out.println("Instructions executed: " + totalInstructions);
+        out.println();
+        out.println("Op-codes:");
+        for (int i = 0; i < 16; i++) {
+            if (opCodeCounts[i] > 0) {
+                out.println(String.format("  0x%1$X %2$-10s %3$10d %4$6.1f%%", i, OP_CODE_NAMES[i], opCodeCounts[i], percentage(opCodeCounts[i])));
+            }
+        }
+        out.println();
+        out.println("Addresses:");
+        for (int i = 0; i < 256; i++) {
+            if (addressCounts[i] > 0) {
+                out.println(String.format("  %1$s %2$10d %3$6.1f%%", hex(i), addressCounts[i], percentage(addressCounts[i])));
+            }
+        }
+        out.println();
+        out.println("Memory cells:");
+        for (int i = 0; i < 256; i++) {
+            if ((cellReads[i] > 0) || (cellWrites[i] > 0)) {
+                out.println(String.format("  %1$s reads: %2$10d writes: %3$10d", hex(i), cellReads[i], cellWrites[i]));
+            }
+        }
+        out.println();
+        out.println("Hot loops:");
+        for (HotLoop loop : getHotLoops()) {
+            out.println(String.format("  %1$s-%2$s iterations: %3$10d instructions: %4$10d %5$6.1f%%", hex(loop.getStart()), hex(loop.getEnd()), loop.getIterations(), loop.getInstructions(), percentage(loop.getInstructions())));
+        }
+    }
+
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"instructions\":").append(totalInstructions);
+        sb.append(",\"opCodes\":{");
+        boolean first = true;
+        for (int i = 0; i < 16; i++) {
+            if (opCodeCounts[i] > 0) {
+                sb.append(first ? "" : ",").append("\"").append(Integer.toHexString(i).toUpperCase()).append("\":").append(opCodeCounts[i]);
+                first = false;
+            }
+        }
+        sb.append("},\"addresses\":[");
+        first = true;
+        for (int i = 0; i < 256; i++) {
+            if (addressCounts[i] > 0) {
+                sb.append(first ? "" : ",").append("{\"address\":\"").append(hex(i)).append("\",\"count\":").append(addressCounts[i]).append("}");
+                first = false;
+            }
+        }
+        sb.append("],\"cells\":[");
+        first = true;
+        for (int i = 0; i < 256; i++) {
+            if ((cellReads[i] > 0) || (cellWrites[i] > 0)) {
+                sb.append(first ? "" : ",").append("{\"address\":\"").append(hex(i)).append("\",\"reads\":").append(cellReads[i]).append(",\"writes\":").append(cellWrites[i]).append("}");
+                first = false;
+            }
+        }
+        sb.append("],\"hotLoops\":[");
+        first = true;
+        for (HotLoop loop : getHotLoops()) {
+            sb.append(first ? "" : ",").append("{\"start\":\"").append(hex(loop.getStart())).append("\",\"end\":\"").append(hex(loop.getEnd())).append("\",\"iterations\":").append(loop.getIterations()).append(",\"instructions\":").append(loop.getInstructions()).append("}");
+            first = false;
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private double percentage(long count) {
+        return (totalInstructions == 0) ? 0 : (100.0 * count / totalInstructions);
+    }
+
+    private static String hex(int value) {
+        return "0x" + BitPatternUtils.toHexString(value, 2).toUpperCase();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.processor;
+
+/**
+ * A basic block of a program, translated by FastProcessor into a flat array
+ * of instruction words so that it can be executed without fetching the
+ * instructions from memory or updating the program counter after each one.
+ * A block ends at a JUMP, a HALT or right before an invalid instruction.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+final class TranslatedBlock {
+
+    private final int start;
+    private final int[] words;
+    private boolean valid;
+
+    TranslatedBlock(int start, int[] words) {
+        this.start = start;
+        this.words = words;
+        this.valid = true;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int[] getWords() {
+        return words;
+    }
+
+    int getLength() {
+        return words.length;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Checks whether one of this block's instructions is stored at address.
+     * @param address a memory address
+     * @return true if the byte at address belongs to this block
+     */
+    boolean covers(int address) {
+        return ((address - start) & 0xFF) < (words.length * 2);
+    }
+}
@@ -29,4 +29,21 @@ public interface IProgramCounter extends ISubject{
     public void set(IMemoryAddress address);
     public void inc();
     public void reset();
+
+    /**
+     * Returns the address of the next instruction.
+     * @return the program counter's value
+     */
+    public int getIndex();
+
+    /**
+     * Moves to the next instruction, wrapping around at the end of the memory.
+     */
+    public void advance();
+
+    /**
+     * Moves to an instruction.
+     * @param index the instruction's address - it wraps around at the end of the memory
+     */
+    public void jumpTo(int index);
 }
@@ -25,36 +25,80 @@ import java.util.List;
 import util.patterns.observer.IObserver;
 
 /**
+ * The program counter keeps the address of the next instruction as an int.
+ * The IMemoryAddress returned by get() is only created when it is asked for,
+ * and observers receive the same notification, updated, for every change.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
 public class ProgramCounter implements IProgramCounter{
 
+    private int numberOfCells;
+    private int addressLength;
+    private int index;
     private IMemoryAddress address;
     private List<IObserver> observers;
+    private ProgramCounterNotificationData notificationData;
 
     public ProgramCounter() {
-        this.address = new MemoryAddress("0x00");
+        this.numberOfCells = 256;
+        this.addressLength = 8;
+        this.index = 0;
+        this.address = null;
         this.observers = new ArrayList<IObserver>();
+        this.notificationData = null;
     }
 
     public IMemoryAddress get() {
+        if (address == null) {
+            address = new MemoryAddress(index, addressLength);
+        }
         return this.address;
     }
 
     public void set(IMemoryAddress address) {
-        this.address = address;
-        notifyObservers(new ProgramCounterNotificationData(address));
+        jumpTo(address.getUnsigned());
     }
 
     public void inc() {
-        this.set(new MemoryAddress("0x"+Integer.toHexString( Integer.parseInt(this.address.toHexString().substring(2), 16) + 2 )));
-        notifyObservers(new ProgramCounterNotificationData(address));
+        advance();
     }
 
     public void reset() {
-        this.address = new MemoryAddress("0x00");
-        notifyObservers(new ProgramCounterNotificationData(address));
+        jumpTo(0);
+    }
+
+    /**
+     * Sets the number of memory cells the program counter addresses; it
+     * wraps around to 0 past the last one and is reset to 0.
+     * @param numberOfCells the size of the memory
+     */
+    public void setAddressSpace(int numberOfCells) {
+        this.numberOfCells = numberOfCells;
+        this.addressLength = (numberOfCells > 256) ? MemoryAddress.WIDE_LENGTH : 8;
+        jumpTo(0);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void advance() {
+        jumpTo(index + 2);
+    }
+
+    public void jumpTo(int index) {
+        index %= numberOfCells;
+        this.index = (index < 0) ? index + numberOfCells : index;
+        this.address = null;
+        if (!observers.isEmpty()) {
+            if (notificationData == null) {
+                notificationData = new ProgramCounterNotificationData(this.index, addressLength);
+            } else {
+                notificationData.setIndex(this.index, addressLength);
+            }
+            notifyObservers(notificationData);
+        }
     }
 
     public void addObserver(IObserver observer) {
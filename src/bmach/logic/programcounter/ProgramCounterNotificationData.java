@@ -17,6 +17,7 @@
 package bmach.logic.programcounter;
 
 import bmach.logic.memory.IMemoryAddress;
+import bmach.logic.memory.MemoryAddress;
 
 /**
  *
@@ -25,16 +26,51 @@ import bmach.logic.memory.IMemoryAddress;
 public class ProgramCounterNotificationData {
 
     private IMemoryAddress address;
+    private int index;
+    private int addressLength;
 
     public ProgramCounterNotificationData(IMemoryAddress address) {
         this.address = address;
+        this.index = address.getUnsigned();
+        this.addressLength = address.length();
+    }
+
+    public ProgramCounterNotificationData(int index) {
+        this(index, 8);
+    }
+
+    public ProgramCounterNotificationData(int index, int addressLength) {
+        this.address = null;
+        this.index = index;
+        this.addressLength = addressLength;
     }
 
     public IMemoryAddress getAddress() {
+        if (address == null) {
+            address = new MemoryAddress(index, addressLength);
+        }
         return address;
     }
 
     public void setAddress(IMemoryAddress address) {
         this.address = address;
+        this.index = address.getUnsigned();
+        this.addressLength = address.length();
+    }
+
+    /**
+     * Points the notification at another address, so that a program counter
+     * can reuse it for every change.
+     * @param index the address
+     * @param addressLength the address's length in bits
+     */
+    void setIndex(int index, int addressLength) {
+        this.address = null;
+        this.index = index;
+        this.addressLength = addressLength;
+    }
+
+    public int getIndex() {
+        return index;
     }
 }
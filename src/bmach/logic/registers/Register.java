@@ -33,11 +33,13 @@ public class Register implements IRegister{
     private IRegisterAddress address;
     private IBitPattern content;
     private List<IObserver> observers;
+    private RegisterNotificationData notificationData;
 
     public Register(IRegisterAddress address) {
         this.address = address;
         this.content = new ByteBitPattern();
         this.observers = new ArrayList<IObserver>();
+        this.notificationData = null;
     }
 
     public IRegisterAddress getAddress() {
@@ -46,7 +48,7 @@ public class Register implements IRegister{
 
     public void setAddress(IRegisterAddress address) {
         this.address = address;
-        notifyObservers(new RegisterNotificationData(this));
+        notifyChanged();
     }
 
     public IBitPattern getContent() {
@@ -56,7 +58,7 @@ public class Register implements IRegister{
     public void setContent(IBitPattern content) {
         if(content.length() == 8){
             this.content = content;
-            notifyObservers(new RegisterNotificationData(this));
+            notifyChanged();
         }else{
             throw new ArithmeticException("Cannot assign a bit pattern that is not 8 bits long to a byte.");
         }
@@ -64,7 +66,38 @@ public class Register implements IRegister{
 
     public void setContentValue(String value) {
         this.content.setValue(value);
-        notifyObservers(new RegisterNotificationData(this));
+        notifyChanged();
+    }
+
+    public int getUnsigned() {
+        return this.content.getUnsigned();
+    }
+
+    public int getSigned() {
+        return this.content.getSigned();
+    }
+
+    public void setBits(int bits) {
+        this.content.setBits(bits);
+        notifyChanged();
+    }
+
+    public void copyFrom(IBitPattern value) {
+        this.content.copyFrom(value);
+        notifyChanged();
+    }
+
+    /**
+     * Notifies the observers, if there are any, with a notification that is
+     * created once and reused for every change.
+     */
+    private void notifyChanged() {
+        if (!observers.isEmpty()) {
+            if (notificationData == null) {
+                notificationData = new RegisterNotificationData(this);
+            }
+            notifyObservers(notificationData);
+        }
     }
 
     public void addObserver(IObserver observer) {
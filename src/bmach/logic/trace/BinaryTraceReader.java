@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a trace written by a BinaryTraceWriter. Records can be read in order
+ * through iterator() or directly with get(); either way the file is mapped
+ * into memory one window at a time.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class BinaryTraceReader implements Iterable<TraceRecord> {
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+    private long recordCount;
+
+    public BinaryTraceReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(BinaryTraceWriter.HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                this.file.close();
+                throw new IOException("Not a BMach trace: " + file);
+            }
+        }
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getShort();
+        int recordSize = header.getShort();
+        if ((magic != BinaryTraceWriter.MAGIC) || (version != BinaryTraceWriter.VERSION) || (recordSize != BinaryTraceWriter.RECORD_SIZE)) {
+            this.file.close();
+            throw new IOException("Not a BMach trace: " + file);
+        }
+        this.recordCount = header.getLong();
+        this.buffer = null;
+        this.regionStart = -1;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Reads a record.
+     * @param index the position of the record in the trace
+     * @return the record
+     * @throws IOException if the file could not be read
+     */
+    public TraceRecord get(long index) throws IOException {
+        if ((index < 0) || (index >= recordCount)) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+        }
+        long position = BinaryTraceWriter.HEADER_SIZE + index * BinaryTraceWriter.RECORD_SIZE;
+        long start = position - (position % BinaryTraceWriter.REGION_SIZE);
+        if (start != regionStart) {
+            long end = Math.min(start + BinaryTraceWriter.REGION_SIZE, BinaryTraceWriter.HEADER_SIZE + recordCount * BinaryTraceWriter.RECORD_SIZE);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            regionStart = start;
+        }
+        long record = buffer.getLong((int) (position - start));
+        return new TraceRecord(index, (int) (record >>> 56), (int) (record >>> 40) & 0xFFFF,
+                (int) (record >>> 24) & 0xFF, (int) (record >>> 16) & 0xFF, ((int) (record >>> 8) & 0xFF) | (((int) record & 0xFF) << 8));
+    }
+
+    /**
+     * Returns an iterator over the records, in the order they were recorded.
+     * An IOException thrown while reading is rethrown wrapped in an
+     * IllegalStateException.
+     * @return the iterator
+     */
+    public Iterator<TraceRecord> iterator() {
+        return new Iterator<TraceRecord>() {
+
+            private long next = 0;
+
+            public boolean hasNext() {
+                return next < recordCount;
+            }
+
+            public TraceRecord next() {
+                if (next >= recordCount) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return get(next++);
+                } catch (IOException ioe) {
+                    throw new IllegalStateException(ioe);
+                }
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        buffer = null;
+        file.close();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a trace to a file as fixed-width binary records, through a window of
+ * the file mapped into memory so that recording an instruction is a handful
+ * of stores into the page cache.
+ *
+ * The file starts with a HEADER_SIZE-byte header - the magic number, the
+ * format version, the record size and the number of records - followed by
+ * one RECORD_SIZE-byte record per instruction: the address, the two bytes of
+ * the instruction word, a reserved byte, the destination's old and new
+ * values, and the low and high bytes of the address of the next
+ * instruction - the high byte is only used by extended profiles, whose wide
+ * JUMP can leave the first 256 cells.
+ * The header is written by close().
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class BinaryTraceWriter implements ITraceRecorder {
+
+    public final static int MAGIC;
+    public final static int VERSION;
+    public final static int HEADER_SIZE;
+    public final static int RECORD_SIZE;
+    final static int REGION_SIZE;
+
+    static {
+        MAGIC = 0x424D5452; // "BMTR"
+        VERSION = 1;
+        HEADER_SIZE = 16;
+        RECORD_SIZE = 8;
+        REGION_SIZE = 1 << 23;
+    }
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+    private long recordCount;
+    private IOException error;
+
+    public BinaryTraceWriter(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.recordCount = 0;
+        this.error = null;
+        mapRegion(0);
+        buffer.position(HEADER_SIZE);
+    }
+
+    private void mapRegion(long start) throws IOException {
+        regionStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+    }
+
+    public void record(int address, int word, int oldValue, int newValue, int nextAddress) {
+        MappedByteBuffer buffer = this.buffer;
+        if (!buffer.hasRemaining()) {
+            if (error != null) {
+                return;
+            }
+            try {
+                mapRegion(regionStart + REGION_SIZE);
+                buffer = this.buffer;
+            } catch (IOException ioe) {
+                error = ioe;
+                return;
+            }
+        }
+        buffer.putLong(((long) (address & 0xFF) << 56) | ((long) (word & 0xFFFF) << 40)
+                | ((long) (oldValue & 0xFF) << 24) | ((newValue & 0xFF) << 16) | ((nextAddress & 0xFF) << 8) | ((nextAddress >>> 8) & 0xFF));
+        recordCount++;
+    }
+
+    /**
+     * Returns the number of instructions recorded so far.
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the header, trims the file to the recorded instructions and
+     * closes it.
+     * @throws IOException if the file could not be written or grown while recording
+     */
+    public void close() throws IOException {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.putShort((short) RECORD_SIZE);
+            header.putLong(recordCount);
+            header.flip();
+            channel.write(header, 0);
+            buffer.force();
+            try {
+                channel.truncate(HEADER_SIZE + recordCount * RECORD_SIZE);
+            } catch (IOException ioe) {
+                // some platforms cannot shrink a mapped file; the header
+                // holds the number of records, so the padding is harmless
+            }
+        } finally {
+            buffer = null;
+            file.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+import bmach.logic.machine.MachineSnapshot;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a trace written by a DeltaTraceWriter. seek() rebuilds the state of
+ * the machine before any instruction by decoding the block that holds it:
+ * the block's keyframe is loaded and the records before the instruction are
+ * replayed onto it.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class DeltaTraceReader implements Iterable<TraceRecord> {
+
+    /**
+     * A position in the trace, together with the state of the machine
+     * before the instruction at that position.
+     */
+    private class Cursor {
+
+        private final byte[] state;
+        private byte[] data;
+        private int offset;
+        private int block;
+        private long next;
+        private long blockEnd;
+
+        public Cursor() {
+            this.state = new byte[MachineSnapshot.SIZE];
+            this.data = null;
+            this.block = -1;
+            this.next = 0;
+            this.blockEnd = 0;
+        }
+
+        public void seek(long index) throws IOException {
+            if ((index < 0) || (index > recordCount)) {
+                throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+            }
+            if ((index < next) || (index > blockEnd) || (data == null)) {
+                int b = findBlock(index);
+                if (b < 0) {
+                    throw new IOException("The trace has no keyframe");
+                }
+                loadBlock(b);
+            }
+            while (next < index) {
+                read();
+            }
+        }
+
+        public boolean hasNext() {
+            return next < recordCount;
+        }
+
+        public TraceRecord read() throws IOException {
+            if ((next == blockEnd) || (data == null)) {
+                loadBlock((data == null) ? findBlock(next) : block + 1);
+            }
+            int flags = data[offset++];
+            int address = ((flags & DeltaTraceWriter.FLAG_ADDRESS) != 0) ? (data[offset++] & 0xFF) : (state[MachineSnapshot.PROGRAM_COUNTER_OFFSET] & 0xFF);
+            if ((flags & DeltaTraceWriter.FLAG_WORD) != 0) {
+                state[MachineSnapshot.MEMORY_OFFSET + address] = data[offset++];
+                state[MachineSnapshot.MEMORY_OFFSET + ((address + 1) & 0xFF)] = data[offset++];
+            }
+            int word = ((state[MachineSnapshot.MEMORY_OFFSET + address] & 0xFF) << 8) | (state[MachineSnapshot.MEMORY_OFFSET + ((address + 1) & 0xFF)] & 0xFF);
+            int kind = TraceRecord.getDestinationKind(word);
+            int destination = (kind == TraceRecord.DESTINATION_REGISTER) ? MachineSnapshot.REGISTERS_OFFSET + TraceRecord.getDestinationIndex(word)
+                    : ((kind == TraceRecord.DESTINATION_MEMORY) ? MachineSnapshot.MEMORY_OFFSET + TraceRecord.getDestinationIndex(word) : -1);
+            int oldValue;
+            if ((flags & DeltaTraceWriter.FLAG_OLD_VALUE) != 0) {
+                oldValue = data[offset++] & 0xFF;
+            } else {
+                oldValue = (destination >= 0) ? (state[destination] & 0xFF) : 0;
+            }
+            int newValue = oldValue;
+            if ((flags & DeltaTraceWriter.FLAG_VALUE) != 0) {
+                int value = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                newValue = oldValue + ((value >>> 1) ^ -(value & 1));
+            }
+            int nextAddress = ((flags & DeltaTraceWriter.FLAG_NEXT_ADDRESS) != 0) ? (data[offset++] & 0xFF) : ((address + 2) & 0xFF);
+            if ((flags & DeltaTraceWriter.FLAG_WIDE_NEXT_ADDRESS) != 0) {
+                nextAddress |= (data[offset++] & 0xFF) << 8;
+            }
+            if (destination >= 0) {
+                state[destination] = (byte) newValue;
+            }
+            state[MachineSnapshot.PROGRAM_COUNTER_OFFSET] = (byte) nextAddress;
+            return new TraceRecord(next++, address, word, oldValue, newValue & 0xFF, nextAddress);
+        }
+
+        private void loadBlock(int b) throws IOException {
+            file.seek(blockOffsets[b]);
+            long firstRecord = file.readLong();
+            int records = file.readInt();
+            int length = file.readInt();
+            byte[] input = new byte[file.readInt()];
+            file.readFully(input);
+            byte[] output = new byte[length];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input);
+                int n = 0;
+                while (n < length) {
+                    int inflated = inflater.inflate(output, n, length - n);
+                    if ((inflated == 0) && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated block " + b);
+                    }
+                    n += inflated;
+                }
+            } catch (DataFormatException dfe) {
+                throw new IOException("Corrupt block " + b + ": " + dfe.getMessage());
+            } finally {
+                inflater.end();
+            }
+            System.arraycopy(output, 0, state, 0, MachineSnapshot.SIZE);
+            data = output;
+            offset = MachineSnapshot.SIZE;
+            block = b;
+            next = firstRecord;
+            blockEnd = firstRecord + records;
+        }
+    }
+    private RandomAccessFile file;
+    private long recordCount;
+    private int keyframeInterval;
+    private long[] blockFirstRecords;
+    private long[] blockOffsets;
+    private Cursor cursor;
+
+    public DeltaTraceReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            if ((this.file.readInt() != DeltaTraceWriter.MAGIC) || (this.file.readShort() != DeltaTraceWriter.VERSION)) {
+                throw new IOException("Not a BMach delta trace: " + file);
+            }
+            this.keyframeInterval = this.file.readInt();
+            this.file.seek(this.file.length() - DeltaTraceWriter.FOOTER_SIZE);
+            this.recordCount = this.file.readLong();
+            int blockCount = this.file.readInt();
+            long indexOffset = this.file.readLong();
+            if (this.file.readInt() != DeltaTraceWriter.MAGIC) {
+                throw new IOException("Incomplete BMach delta trace: " + file);
+            }
+            this.blockFirstRecords = new long[blockCount];
+            this.blockOffsets = new long[blockCount];
+            this.file.seek(indexOffset);
+            for (int i = 0; i < blockCount; i++) {
+                blockFirstRecords[i] = this.file.readLong();
+                blockOffsets[i] = this.file.readLong();
+            }
+        } catch (IOException ioe) {
+            this.file.close();
+            throw ioe;
+        }
+        this.cursor = new Cursor();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Rebuilds the state of the machine before an instruction was executed.
+     * @param index the position of the instruction in the trace, or getRecordCount() for the state after the last instruction
+     * @return the state of the machine
+     * @throws IOException if the trace could not be read
+     */
+    public MachineSnapshot seek(long index) throws IOException {
+        cursor.seek(index);
+        return new MachineSnapshot(cursor.state);
+    }
+
+    /**
+     * Reads a record.
+     * @param index the position of the record in the trace
+     * @return the record
+     * @throws IOException if the trace could not be read
+     */
+    public TraceRecord get(long index) throws IOException {
+        if (index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+        }
+        cursor.seek(index);
+        return cursor.read();
+    }
+
+    /**
+     * Returns an iterator over the records, in the order they were recorded.
+     * Each iterator decodes the trace independently of seek() and get(). An
+     * IOException thrown while reading is rethrown wrapped in an
+     * IllegalStateException.
+     * @return the iterator
+     */
+    public Iterator<TraceRecord> iterator() {
+        final Cursor iteratorCursor = new Cursor();
+        return new Iterator<TraceRecord>() {
+
+            public boolean hasNext() {
+                return iteratorCursor.hasNext();
+            }
+
+            public TraceRecord next() {
+                if (!iteratorCursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return iteratorCursor.read();
+                } catch (IOException ioe) {
+                    throw new IllegalStateException(ioe);
+                }
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int findBlock(long index) {
+        int low = 0;
+        int high = blockFirstRecords.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockFirstRecords[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+}
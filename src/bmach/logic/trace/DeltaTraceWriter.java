@@ -0,0 +1,301 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+import bmach.logic.machine.IMachine;
+import bmach.logic.machine.MachineSnapshot;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a trace as a stream of compressed blocks. Each block starts with a
+ * keyframe - the complete state of the machine, laid out like a
+ * MachineSnapshot - followed by up to keyframeInterval delta records.
+ *
+ * A delta record is a flags byte followed by the fields that cannot be
+ * predicted from the previous records: the address (predicted: the previous
+ * record's next address), the instruction word and the destination's old
+ * value (predicted: the state rebuilt from the keyframe and the previous
+ * records), the change of the destination's value as a zig-zag varint, and
+ * the next address (predicted: the following instruction), followed by its
+ * high byte when a wide JUMP left the first 256 cells. A loop body
+ * therefore costs one or two bytes per instruction before compression.
+ *
+ * Each block is deflated on its own and written as soon as it is full, and
+ * close() appends an index of the blocks so that DeltaTraceReader can seek
+ * to any instruction by decoding a single block.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class DeltaTraceWriter implements ITraceRecorder {
+
+    public final static int MAGIC;
+    public final static int VERSION;
+    public final static int DEFAULT_KEYFRAME_INTERVAL;
+    final static int FLAG_ADDRESS;
+    final static int FLAG_WORD;
+    final static int FLAG_OLD_VALUE;
+    final static int FLAG_VALUE;
+    final static int FLAG_NEXT_ADDRESS;
+    final static int FLAG_WIDE_NEXT_ADDRESS;
+    final static int FOOTER_SIZE;
+
+    static {
+        MAGIC = 0x424D5444; // "BMTD"
+        VERSION = 1;
+        DEFAULT_KEYFRAME_INTERVAL = 4096;
+        FLAG_ADDRESS = 1;
+        FLAG_WORD = 2;
+        FLAG_OLD_VALUE = 4;
+        FLAG_VALUE = 8;
+        FLAG_NEXT_ADDRESS = 16;
+        FLAG_WIDE_NEXT_ADDRESS = 32;
+        FOOTER_SIZE = 24;
+    }
+    private DataOutputStream out;
+    private IMachine machine;
+    private int keyframeInterval;
+    private Deflater deflater;
+    private ByteArrayOutputStream block;
+    private byte[] compressed;
+    private byte[] state;
+    private long position;
+    private long recordCount;
+    private long blockFirstRecord;
+    private int blockRecords;
+    private long[] blockFirstRecords;
+    private long[] blockOffsets;
+    private int blockCount;
+    private IOException error;
+
+    public DeltaTraceWriter(OutputStream out, IMachine machine) throws IOException {
+        this(out, machine, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Creates a writer.
+     * @param out the stream the trace is written to - closed by close()
+     * @param machine the machine whose processor the writer is attached to; its state is captured when the first instruction is recorded
+     * @param keyframeInterval the number of instructions between keyframes
+     * @throws IOException if the header could not be written
+     */
+    public DeltaTraceWriter(OutputStream out, IMachine machine, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.machine = machine;
+        this.keyframeInterval = keyframeInterval;
+        this.deflater = new Deflater();
+        this.block = new ByteArrayOutputStream();
+        this.compressed = new byte[8192];
+        this.state = null;
+        this.recordCount = 0;
+        this.blockRecords = 0;
+        this.blockFirstRecords = new long[16];
+        this.blockOffsets = new long[16];
+        this.blockCount = 0;
+        this.error = null;
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeInt(keyframeInterval);
+        this.position = 10;
+    }
+
+    public void record(int address, int word, int oldValue, int newValue, int nextAddress) {
+        if (error != null) {
+            return;
+        }
+        int kind = TraceRecord.getDestinationKind(word);
+        int destination = (kind == TraceRecord.DESTINATION_REGISTER) ? MachineSnapshot.REGISTERS_OFFSET + TraceRecord.getDestinationIndex(word)
+                : ((kind == TraceRecord.DESTINATION_MEMORY) ? MachineSnapshot.MEMORY_OFFSET + TraceRecord.getDestinationIndex(word) : -1);
+        if (state == null) {
+            state = MachineSnapshot.of(machine).toByteArray();
+            state[MachineSnapshot.PROGRAM_COUNTER_OFFSET] = (byte) address;
+            if (destination >= 0) {
+                state[destination] = (byte) oldValue;
+            }
+        }
+        if (blockRecords == keyframeInterval) {
+            writeBlock();
+            if (error != null) {
+                return;
+            }
+        }
+        if (blockRecords == 0) {
+            block.reset();
+            block.write(state, 0, state.length);
+            blockFirstRecord = recordCount;
+        }
+
+        int flags = 0;
+        if (address != (state[MachineSnapshot.PROGRAM_COUNTER_OFFSET] & 0xFF)) {
+            flags |= FLAG_ADDRESS;
+        }
+        if (word != (((state[MachineSnapshot.MEMORY_OFFSET + address] & 0xFF) << 8) | (state[MachineSnapshot.MEMORY_OFFSET + ((address + 1) & 0xFF)] & 0xFF))) {
+            flags |= FLAG_WORD;
+        }
+        if ((destination >= 0) && (oldValue != (state[destination] & 0xFF))) {
+            flags |= FLAG_OLD_VALUE;
+        }
+        if (newValue != oldValue) {
+            flags |= FLAG_VALUE;
+        }
+        if (nextAddress != ((address + 2) & 0xFF)) {
+            flags |= FLAG_NEXT_ADDRESS;
+        }
+        if (nextAddress > 0xFF) {
+            flags |= FLAG_WIDE_NEXT_ADDRESS;
+        }
+        block.write(flags);
+        if ((flags & FLAG_ADDRESS) != 0) {
+            block.write(address);
+        }
+        if ((flags & FLAG_WORD) != 0) {
+            block.write(word >>> 8);
+            block.write(word);
+            state[MachineSnapshot.MEMORY_OFFSET + address] = (byte) (word >>> 8);
+            state[MachineSnapshot.MEMORY_OFFSET + ((address + 1) & 0xFF)] = (byte) word;
+        }
+        if ((flags & FLAG_OLD_VALUE) != 0) {
+            block.write(oldValue);
+        }
+        if ((flags & FLAG_VALUE) != 0) {
+            int delta = newValue - oldValue;
+            writeVarint((delta << 1) ^ (delta >> 31));
+        }
+        if ((flags & FLAG_NEXT_ADDRESS) != 0) {
+            block.write(nextAddress);
+        }
+        if ((flags & FLAG_WIDE_NEXT_ADDRESS) != 0) {
+            block.write(nextAddress >>> 8);
+        }
+        if (destination >= 0) {
+            state[destination] = (byte) newValue;
+        }
+        state[MachineSnapshot.PROGRAM_COUNTER_OFFSET] = (byte) nextAddress;
+        blockRecords++;
+        recordCount++;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            block.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block.write(value);
+    }
+
+    /**
+     * Compresses the current block and writes it to the stream: the number
+     * of its first record, the number of records, the uncompressed and the
+     * compressed length and the compressed bytes.
+     */
+    private void writeBlock() {
+        try {
+            if (blockCount == blockOffsets.length) {
+                long[] offsets = new long[blockCount * 2];
+                long[] firstRecords = new long[blockCount * 2];
+                System.arraycopy(blockOffsets, 0, offsets, 0, blockCount);
+                System.arraycopy(blockFirstRecords, 0, firstRecords, 0, blockCount);
+                blockOffsets = offsets;
+                blockFirstRecords = firstRecords;
+            }
+            blockOffsets[blockCount] = position;
+            blockFirstRecords[blockCount] = blockFirstRecord;
+            blockCount++;
+
+            byte[] data = block.toByteArray();
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    byte[] larger = new byte[compressed.length * 2];
+                    System.arraycopy(compressed, 0, larger, 0, length);
+                    compressed = larger;
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            out.writeLong(blockFirstRecord);
+            out.writeInt(blockRecords);
+            out.writeInt(data.length);
+            out.writeInt(length);
+            out.write(compressed, 0, length);
+            position += 20 + length;
+            blockRecords = 0;
+        } catch (IOException ioe) {
+            error = ioe;
+        }
+    }
+
+    /**
+     * Returns the number of instructions recorded so far.
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Writes the last block and the block index and closes the stream. A
+     * trace without records still gets a block holding the keyframe of the
+     * machine's current state.
+     * @throws IOException if the trace could not be written
+     */
+    public void close() throws IOException {
+        try {
+            if ((error == null) && (blockCount == 0) && (blockRecords == 0)) {
+                if (state == null) {
+                    state = MachineSnapshot.of(machine).toByteArray();
+                }
+                block.reset();
+                block.write(state, 0, state.length);
+                blockFirstRecord = 0;
+                writeBlock();
+            } else if ((error == null) && (blockRecords > 0)) {
+                writeBlock();
+            }
+            if (error == null) {
+                long indexOffset = position;
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeLong(blockFirstRecords[i]);
+                    out.writeLong(blockOffsets[i]);
+                }
+                out.writeLong(recordCount);
+                out.writeInt(blockCount);
+                out.writeLong(indexOffset);
+                out.writeInt(MAGIC);
+            }
+        } finally {
+            deflater.end();
+            out.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+/**
+ * Receives every instruction executed by a processor it is attached to with
+ * IProcessor.setTraceRecorder().
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public interface ITraceRecorder {
+
+    /**
+     * Records an executed instruction.
+     * @param address the address of the instruction
+     * @param word the instruction word
+     * @param oldValue the value of the instruction's destination (see TraceRecord.getDestinationKind()) before the instruction was executed
+     * @param newValue the value of the instruction's destination after the instruction was executed
+     * @param nextAddress the address of the instruction executed next
+     */
+    public void record(int address, int word, int oldValue, int newValue, int nextAddress);
+}
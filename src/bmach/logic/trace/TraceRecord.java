@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.logic.trace;
+
+import bmach.logic.processor.InstructionDecoder;
+import util.binary.bitpattern.BitPatternUtils;
+
+/**
+ * An instruction read back from a trace: where it was executed, what it was,
+ * what it overwrote and where execution continued.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class TraceRecord {
+
+    public final static int DESTINATION_NONE;
+    public final static int DESTINATION_REGISTER;
+    public final static int DESTINATION_MEMORY;
+
+    static {
+        DESTINATION_NONE = 0;
+        DESTINATION_REGISTER = 1;
+        DESTINATION_MEMORY = 2;
+    }
+    private long index;
+    private int address;
+    private int word;
+    private int oldValue;
+    private int newValue;
+    private int nextAddress;
+
+    public TraceRecord(long index, int address, int word, int oldValue, int newValue, int nextAddress) {
+        this.index = index;
+        this.address = address;
+        this.word = word;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.nextAddress = nextAddress;
+    }
+
+    /**
+     * Returns the kind of location an instruction writes.
+     * @param word the instruction word
+     * @return one of the DESTINATION_* constants
+     */
+    public static int getDestinationKind(int word) {
+        switch (word >>> 12) {
+            case 0x3:
+                return DESTINATION_MEMORY;
+            case 0x1:
+            case 0x2:
+            case 0x4:
+            case 0x5:
+            case 0x6:
+            case 0x7:
+            case 0x8:
+            case 0x9:
+            case 0xA:
+                return DESTINATION_REGISTER;
+            default:
+                return DESTINATION_NONE;
+        }
+    }
+
+    /**
+     * Returns the index of the register or the address of the memory cell an
+     * instruction writes.
+     * @param word the instruction word
+     * @return the destination's index, or 0 if the instruction writes nothing
+     */
+    public static int getDestinationIndex(int word) {
+        switch (word >>> 12) {
+            case 0x3:
+                return word & 0xFF;
+            case 0x4:
+                return word & 0xF;
+            case 0x1:
+            case 0x2:
+            case 0x5:
+            case 0x6:
+            case 0x7:
+            case 0x8:
+            case 0x9:
+            case 0xA:
+                return (word >>> 8) & 0xF;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the position of the instruction in the trace.
+     * @return the number of instructions executed before this one
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public int getWord() {
+        return word;
+    }
+
+    public int getDestinationKind() {
+        return getDestinationKind(word);
+    }
+
+    public int getDestinationIndex() {
+        return getDestinationIndex(word);
+    }
+
+    public int getOldValue() {
+        return oldValue;
+    }
+
+    public int getNewValue() {
+        return newValue;
+    }
+
+    public int getNextAddress() {
+        return nextAddress;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(index).append(": 0x").append(hex(address)).append(" 0x").append(BitPatternUtils.toHexString(word, 4).toUpperCase());
+        sb.append(" ").append(InstructionDecoder.decode(word).getDescription());
+        int kind = getDestinationKind();
+        if (kind == DESTINATION_REGISTER) {
+            sb.append(" [R").append(Integer.toHexString(getDestinationIndex()).toUpperCase()).append(": ");
+            sb.append(hex(oldValue)).append(" -> ").append(hex(newValue)).append("]");
+        } else if (kind == DESTINATION_MEMORY) {
+            sb.append(" [0x").append(hex(getDestinationIndex())).append(": ");
+            sb.append(hex(oldValue)).append(" -> ").append(hex(newValue)).append("]");
+        }
+        return sb.toString();
+    }
+
+    private static String hex(int value) {
+        return BitPatternUtils.toHexString(value, 2).toUpperCase();
+    }
+}
@@ -22,6 +22,8 @@
  */
 package bmach.ui.gui;
 
+import bmach.logic.ChangeEventBus;
+import bmach.logic.machine.Breakpoints;
 import bmach.logic.machine.IMachine;
 import bmach.logic.machine.Machine;
 import bmach.logic.machine.parser.MalformedInstructionException;
@@ -30,10 +32,8 @@ import bmach.logic.processor.IProcessor;
 import bmach.logic.processor.MalformedProcessorInstructionException;
 import bmach.logic.processor.ProcessorNotificationData;
 import bmach.logic.processor.ProcessorUtils;
-import bmach.logic.registers.IRegister;
 import bmach.ui.gui.actions.BMachAction;
 import bmach.ui.gui.actions.JDialogSpawningAction;
-import bmach.ui.gui.components.JByteContainerPanel;
 import bmach.ui.gui.integration.FileDrop;
 import documentcontainer.DocumentContainer;
 import documentcontainer.DocumentIOManager;
@@ -43,7 +43,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.*;
 import java.nio.charset.Charset;
-import java.util.List;
 import javax.swing.*;
 import javax.swing.border.Border;
 import javax.swing.event.DocumentEvent;
@@ -188,6 +187,81 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         }
     }
 
+    private class StepBackAction extends BMachAction {
+
+        public StepBackAction() {
+            super("Step back", "Step back", new Integer(KeyEvent.VK_J), KeyStroke.getKeyStroke(KeyEvent.VK_J, ActionEvent.CTRL_MASK), "/bmach/ui/gui/resources/undo.png");
+            this.setEnabled(false);
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            if (isEnabled()) {
+                machine.stepBack();
+            }
+        }
+    }
+
+    private class ReverseContinueAction extends BMachAction {
+
+        public ReverseContinueAction() {
+            super("Reverse continue", "Reverse continue", new Integer(KeyEvent.VK_R), KeyStroke.getKeyStroke(KeyEvent.VK_J, ActionEvent.CTRL_MASK | ActionEvent.SHIFT_MASK), "/bmach/ui/gui/resources/undo.png");
+            this.setEnabled(false);
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            if (isEnabled()) {
+                machine.reverseContinue();
+            }
+        }
+    }
+
+    private class ContinueAction extends BMachAction {
+
+        public ContinueAction() {
+            super("Continue", "Continue", new Integer(KeyEvent.VK_C), KeyStroke.getKeyStroke(KeyEvent.VK_K, ActionEvent.CTRL_MASK | ActionEvent.SHIFT_MASK), "/bmach/ui/gui/resources/control_play_blue.png");
+            this.setEnabled(false);
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            if (isEnabled()) {
+                resume();
+            }
+        }
+    }
+
+    private class ToggleBreakpointAction extends BMachAction {
+
+        public ToggleBreakpointAction() {
+            super("Toggle breakpoint", "Pause before executing the instruction at this address", null, null, "/bmach/ui/gui/resources/control_stop_blue.png");
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            int index = jMemoryList1.getSelectedIndex();
+            if (index >= 0) {
+                Breakpoints breakpoints = machine.getBreakpoints();
+                breakpoints.setBreakpoint(index, !breakpoints.isBreakpoint(index));
+            }
+        }
+    }
+
+    private class ToggleWatchAction extends BMachAction {
+
+        private int flag;
+
+        public ToggleWatchAction(String name, String tooltip, int flag, String smallIconURL) {
+            super(name, tooltip, null, null, smallIconURL);
+            this.flag = flag;
+        }
+
+        public void actionPerformed(ActionEvent e) {
+            int index = jMemoryList1.getSelectedIndex();
+            if (index >= 0) {
+                Breakpoints breakpoints = machine.getBreakpoints();
+                breakpoints.setMemoryWatch(index, breakpoints.getMemoryWatch(index) ^ flag);
+            }
+        }
+    }
+
     private class ShowHelpAction extends JDialogSpawningAction {
 
         public ShowHelpAction(JComponent dialogParent) {
@@ -281,6 +355,9 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
     private Action saveAsAction;
     private Action executeAction;
     private ExecStepAction executeStepByStepAction;
+    private Action stepBackAction;
+    private Action reverseContinueAction;
+    private Action continueAction;
     private Action stopAction;
     private Action showHelpAction;
     private Action showAboutDialogAction;
@@ -322,25 +399,16 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         IProcessor p = machine.getProcessor();
         p.addObserver(this);
 
-        jByteContainerPanel1.setAddress(" PC ");
-        p.getProgramCounter().addObserver(jByteContainerPanel1);
-
         jByteContainerPanel2.setValue("0x0000");
-        p.getProgramCounter().addObserver(jByteContainerPanel1);
-
-        List<JByteContainerPanel> registerPanels = jRegistersPanel1.getRegisterPanels();
-        for (int i = 0; i < registerPanels.size(); i++) {
-            IRegister r = p.getRegister(i);
-            if (r != null) {
-                JByteContainerPanel regPan = registerPanels.get(i);
-                regPan.setAddress(r.getAddress().toHexString());
-                regPan.setValue(r.getContent().toHexString());
-                r.addObserver(regPan);
-            }
-        }
+
+        ChangeEventBus eventBus = machine.getEventBus();
+        jRegistersPanel1.setProcessor(p);
+        jRegistersPanel1.setProgramCounterPanel(jByteContainerPanel1);
+        jRegistersPanel1.setEventBus(eventBus);
 
         IMainMemory memory = machine.getMemory();
         jMemoryList1.setMemory(memory);
+        jMemoryList1.setEventBus(eventBus);
     }
 
     private void initEditor() {
@@ -359,6 +427,9 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         saveAsAction = new SaveAsAction(this);
         executeAction = new ExecuteAction();
         executeStepByStepAction = new ExecStepAction();
+        stepBackAction = new StepBackAction();
+        reverseContinueAction = new ReverseContinueAction();
+        continueAction = new ContinueAction();
         stopAction = new StopAction();
         showHelpAction = new ShowHelpAction(this);
         showAboutDialogAction = new ShowAboutDialogAction(this);
@@ -395,6 +466,12 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         logPopUp.add(new CopyToClipBoardAction(jTextArea2));
         jTextArea2.setComponentPopupMenu(logPopUp);
 
+        JPopupMenu memoryPopUp = new JPopupMenu();
+        memoryPopUp.add(new ToggleBreakpointAction());
+        memoryPopUp.add(new ToggleWatchAction("Toggle read watchpoint", "Pause after an instruction reads this cell", Breakpoints.WATCH_READ, "/bmach/ui/gui/resources/information.png"));
+        memoryPopUp.add(new ToggleWatchAction("Toggle write watchpoint", "Pause after an instruction writes this cell", Breakpoints.WATCH_WRITE, "/bmach/ui/gui/resources/pencil.png"));
+        jMemoryList1.setComponentPopupMenu(memoryPopUp);
+
         JPopupMenu addressFieldPopUp = new JPopupMenu();
         addressFieldPopUp.add(new CutToClipBoardAction(jAddressTextField1));
         addressFieldPopUp.add(new CopyToClipBoardAction(jAddressTextField1));
@@ -426,6 +503,18 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         return executeStepByStepAction;
     }
 
+    public Action getStepBackAction() {
+        return stepBackAction;
+    }
+
+    public Action getReverseContinueAction() {
+        return reverseContinueAction;
+    }
+
+    public Action getContinueAction() {
+        return continueAction;
+    }
+
     public Action getStopAction() {
         return stopAction;
     }
@@ -594,6 +683,9 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         stopAction.setEnabled(machineRunning);
         executeAction.setEnabled(!machineRunning);
         executeStepByStepAction.setEnabled(!machineRunning);
+        stepBackAction.setEnabled(machineRunning && machine.getStepByStep());
+        reverseContinueAction.setEnabled(machineRunning && machine.getStepByStep());
+        continueAction.setEnabled(machineRunning);
         jSlider1.setEnabled(!machineRunning);
         if (machineRunning) {
             executeStepByStepAction.setNameAndTooltip("Next step", "Next step");
@@ -624,6 +716,10 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
             } else if (data instanceof String) {
                 if (((String) data).equals("halt")) {
                     enableOrDisableControls(false);
+                } else if (((String) data).equals("pause")) {
+                    executeStepByStepAction.setEnabled(true);
+                    stepBackAction.setEnabled(true);
+                    reverseContinueAction.setEnabled(true);
                 }
             } else if (data instanceof MalformedProcessorInstructionException) {
                 enableOrDisableControls(false);
@@ -636,11 +732,11 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
 
     private void loadAndRun(boolean stepByStep) {
         if (!machineThread.isAlive()) {
+            machine.setStepByStep(stepByStep);
             enableOrDisableControls(true);
             machine.reset();
             machine.setSleepTime( (100 - jSlider1.getValue()) * 10 );
             jTextArea2.setText("");
-            machine.setStepByStep(stepByStep);
             try {
                 machine.loadInstructions(new StringReader(jEditorPane1.getText()));
                 machineThread = new Thread(machine);
@@ -662,6 +758,13 @@ public class BMachPanel extends javax.swing.JPanel implements IObserver, Documen
         }
     }
 
+    private void resume() {
+        executeStepByStepAction.setEnabled(false);
+        stepBackAction.setEnabled(false);
+        reverseContinueAction.setEnabled(false);
+        machine.setStepByStep(false);
+    }
+
     private void stop() {
         machine.getProcessor().halt();
     }
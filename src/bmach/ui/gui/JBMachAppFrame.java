@@ -73,6 +73,9 @@ public class JBMachAppFrame extends javax.swing.JFrame{
 
         jMenu3.add(bMachPanel1.getExecuteAction());
         jMenu3.add(bMachPanel1.getExecuteStepByStepAction());
+        jMenu3.add(bMachPanel1.getStepBackAction());
+        jMenu3.add(bMachPanel1.getReverseContinueAction());
+        jMenu3.add(bMachPanel1.getContinueAction());
         jMenu3.add(bMachPanel1.getStopAction());
 
         jMenu4.add(bMachPanel1.getShowHelpAction());
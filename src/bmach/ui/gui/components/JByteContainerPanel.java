@@ -29,6 +29,7 @@ import javax.swing.BoxLayout;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.ListCellRenderer;
+import javax.swing.ToolTipManager;
 import util.binary.bitpattern.BitPattern;
 import util.binary.bitpattern.BitPatternUtils;
 import util.binary.bitpattern.ByteBitPattern;
@@ -41,6 +42,16 @@ import util.patterns.observer.IObserver;
  */
 public class JByteContainerPanel extends JPanel implements IObserver, ListCellRenderer {
 
+    private final static String[] BYTE_HEX_STRINGS;
+    private final static String[] BYTE_TOOLTIPS;
+
+    static {
+        BYTE_HEX_STRINGS = new String[256];
+        for (int i = 0; i < 256; i++) {
+            BYTE_HEX_STRINGS[i] = "0x" + BitPatternUtils.toHexString(i, 2);
+        }
+        BYTE_TOOLTIPS = new String[256];
+    }
     private JAddressPanel addressPanel;
     private JValuePanel valuePanel;
     private Color transparentColor;
@@ -70,7 +81,7 @@ public class JByteContainerPanel extends JPanel implements IObserver, ListCellRe
         this.add(addressPanel);
         this.add(valuePanel);
         this.setBorder(BorderFactory.createLineBorder(transparentColor, 5));
-        this.setToolTipText(getTooltipForHexValue(valuePanel.getValue()));
+        ToolTipManager.sharedInstance().registerComponent(this);
     }
 
     public void setAddress(String address){
@@ -84,7 +95,6 @@ public class JByteContainerPanel extends JPanel implements IObserver, ListCellRe
 
     public void setValue(String value){
         valuePanel.setValue(value);
-        this.setToolTipText(getTooltipForHexValue(valuePanel.getValue()));
     }
 
     public String getValue(){
@@ -102,9 +112,8 @@ public class JByteContainerPanel extends JPanel implements IObserver, ListCellRe
             valuePanel.setValue(register.getContent().toHexString());
         } else if (notificationData instanceof ProgramCounterNotificationData) {
             addressPanel.setAddress(" PC ");
-            valuePanel.setValue(((ProgramCounterNotificationData) notificationData).getAddress().toHexString());
+            valuePanel.setValue(BYTE_HEX_STRINGS[((ProgramCounterNotificationData) notificationData).getIndex() & 0xFF]);
         }
-        this.setToolTipText(getTooltipForHexValue(valuePanel.getValue()));
         this.repaint();
     }
 
@@ -112,7 +121,7 @@ public class JByteContainerPanel extends JPanel implements IObserver, ListCellRe
         if (value instanceof IMemoryCell) {
             IMemoryCell cell = (IMemoryCell)value ;
             addressPanel.setAddress(cell.getAddress().toHexString());
-            valuePanel.setValue(cell.getContent().toHexString());
+            valuePanel.setValue(BYTE_HEX_STRINGS[cell.getContent().intValue() & 0xFF]);
 
             if(isSelected){
                 this.setBackground(list.getSelectionBackground());
@@ -124,12 +133,41 @@ public class JByteContainerPanel extends JPanel implements IObserver, ListCellRe
         } else if (value instanceof IRegister) {
             IRegister register = (IRegister)value ;
             addressPanel.setAddress(register.getAddress().toHexString());
-            valuePanel.setValue(register.getContent().toHexString());
+            valuePanel.setValue(BYTE_HEX_STRINGS[register.getContent().intValue() & 0xFF]);
         }
-        this.setToolTipText(getTooltipForHexValue(valuePanel.getValue()));
         return this;
     }
 
+    /**
+     * Returns the tooltip of the displayed value. It is only built when Swing
+     * asks for it, and the tooltips of the 256 byte values are built once and
+     * shared by all panels.
+     * @return the tooltip
+     */
+    @Override
+    public String getToolTipText() {
+        String hexValue = valuePanel.getValue();
+        if (bitLength == 8) {
+            int value;
+            try {
+                value = Integer.parseInt(hexValue.substring(2), 16) & 0xFF;
+            } catch (RuntimeException e) {
+                return null;
+            }
+            String tooltip = BYTE_TOOLTIPS[value];
+            if (tooltip == null) {
+                tooltip = getTooltipForHexValue(BYTE_HEX_STRINGS[value]);
+                BYTE_TOOLTIPS[value] = tooltip;
+            }
+            return tooltip;
+        }
+        try {
+            return getTooltipForHexValue(hexValue);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
     private String getTooltipForHexValue(String hexValue){
         StringBuilder tooltip = new StringBuilder("<html><ul>");
 
@@ -17,19 +17,33 @@
 
 package bmach.ui.gui.components;
 
+import bmach.logic.ChangeEventBus;
+import bmach.logic.ChangeSet;
 import bmach.logic.memory.IMainMemory;
 import bmach.logic.memory.IMemoryCell;
+import bmach.logic.memory.PagedMemory;
 import java.awt.Color;
+import java.awt.Rectangle;
 import javax.swing.DefaultListModel;
 import javax.swing.JList;
 import util.patterns.observer.IObserver;
 
 /**
+ * Displays the memory cells, one page of 256 cells at a time. Changes are
+ * received as ChangeSets from the machine's ChangeEventBus and only the
+ * bounds of the changed cells of the displayed page are repainted, at most
+ * once per display frame.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
 public class JMemoryList extends JList  implements IObserver{
     private DefaultListModel model;
+    private IMainMemory memory;
+    private volatile int page;
+    private ChangeEventBus eventBus;
+    private final long[] dirtyCells = new long[4];
+    private RepaintScheduler repaintScheduler;
+
     public JMemoryList() {
         super();
         init();
@@ -39,11 +53,47 @@ public class JMemoryList extends JList  implements IObserver{
         super();
         this.model = new DefaultListModel();
         init();
-        updateModel(memory);
+        setMemory(memory);
     }
 
     public void setMemory(IMainMemory memory){
-        updateModel(memory);
+        this.memory = memory;
+        this.page = 0;
+        updateModel();
+    }
+
+    /**
+     * Displays another page of the memory.
+     * @param page the page's index, from 0 to getNumberOfPages()-1
+     */
+    public void setPage(int page){
+        if ((page < 0) || (page >= getNumberOfPages())) {
+            throw new IndexOutOfBoundsException("Invalid memory page: " + page);
+        }
+        this.page = page;
+        updateModel();
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getNumberOfPages() {
+        return (memory == null) ? 0 : (memory.getNumberOfCells() + PagedMemory.PAGE_SIZE - 1) / PagedMemory.PAGE_SIZE;
+    }
+
+    /**
+     * Sets the bus that reports the changes of the displayed memory.
+     * @param eventBus the machine's event bus
+     */
+    public void setEventBus(ChangeEventBus eventBus){
+        if (this.eventBus != null) {
+            this.eventBus.removeObserver(this);
+        }
+        this.eventBus = eventBus;
+        if (eventBus != null) {
+            eventBus.addObserver(this);
+        }
     }
 
     private void init(){
@@ -57,21 +107,65 @@ public class JMemoryList extends JList  implements IObserver{
         this.setVisibleRowCount(128);
         this.setBackground(Color.white);
         this.setSelectionBackground(new Color(126,171,219));
+
+        this.repaintScheduler = new RepaintScheduler(new Runnable() {
+
+            public void run() {
+                repaintDirtyCells();
+            }
+        });
     }
 
-    private void updateModel(IMainMemory memory){
+    private void updateModel(){
         model.clear();
-        for(int i=0; i<memory.getNumberOfCells();i++){
+        int start = page * PagedMemory.PAGE_SIZE;
+        int end = Math.min(start + PagedMemory.PAGE_SIZE, memory.getNumberOfCells());
+        for(int i=start; i<end;i++){
             IMemoryCell cell = memory.get(i);
             if (cell != null) {
                 this.model.addElement(cell);
-                cell.addObserver(this);
             }
         }
         this.setModel(model);
     }
 
     public void notifyObserver(Object notificationData) {
-        this.repaint();
+        if (notificationData instanceof ChangeSet) {
+            ChangeSet changes = (ChangeSet) notificationData;
+            int start = page * PagedMemory.PAGE_SIZE;
+            int end = start + PagedMemory.PAGE_SIZE;
+            int first = changes.nextChangedCell(start);
+            if ((first >= 0) && (first < end)) {
+                synchronized (dirtyCells) {
+                    for (int i = first; (i >= 0) && (i < end); i = changes.nextChangedCell(i + 1)) {
+                        dirtyCells[((i - start) >>> 6) & 3] |= 1L << i;
+                    }
+                }
+                repaintScheduler.schedule();
+            }
+        }
+    }
+
+    private void repaintDirtyCells() {
+        long[] cells = new long[dirtyCells.length];
+        synchronized (dirtyCells) {
+            for (int i = 0; i < dirtyCells.length; i++) {
+                cells[i] = dirtyCells[i];
+                dirtyCells[i] = 0;
+            }
+        }
+        for (int word = 0; word < cells.length; word++) {
+            long bits = cells[word];
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (index < model.getSize()) {
+                    Rectangle bounds = getCellBounds(index, index);
+                    if (bounds != null) {
+                        repaint(bounds);
+                    }
+                }
+            }
+        }
     }
 }
@@ -17,19 +17,34 @@
 
 package bmach.ui.gui.components;
 
+import bmach.logic.ChangeEventBus;
+import bmach.logic.ChangeSet;
+import bmach.logic.processor.IProcessor;
+import bmach.logic.registers.IRegister;
 import java.awt.Color;
 import java.awt.GridLayout;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.JPanel;
+import util.patterns.observer.IObserver;
 
 /**
+ * Displays the registers and, optionally, the program counter. Changes are
+ * received as ChangeSets from the machine's ChangeEventBus and only the
+ * changed panels are updated, at most once per display frame.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
-public class JRegistersPanel extends JPanel{
+public class JRegistersPanel extends JPanel implements IObserver{
 
     List<JByteContainerPanel> registerPanels;
+    private IProcessor processor;
+    private IRegister[] registers;
+    private JByteContainerPanel programCounterPanel;
+    private ChangeEventBus eventBus;
+    private int dirtyRegisters;
+    private boolean programCounterDirty;
+    private RepaintScheduler repaintScheduler;
 
     public JRegistersPanel() {
         super();
@@ -47,10 +62,96 @@ public class JRegistersPanel extends JPanel{
             this.registerPanels.add(registerPanel);
             this.add(registerPanel);
         }
+        this.registers = new IRegister[0];
+        this.repaintScheduler = new RepaintScheduler(new Runnable() {
+
+            public void run() {
+                updateDirtyPanels();
+            }
+        });
     }
 
     public List<JByteContainerPanel> getRegisterPanels() {
         return registerPanels;
     }
 
+    /**
+     * Sets the processor whose registers are displayed.
+     * @param processor the processor
+     */
+    public void setProcessor(IProcessor processor){
+        this.processor = processor;
+        this.registers = new IRegister[Math.min(processor.getNumberOfRegisters(), registerPanels.size())];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = processor.getRegister(i);
+            if (registers[i] != null) {
+                JByteContainerPanel regPan = registerPanels.get(i);
+                regPan.setAddress(registers[i].getAddress().toHexString());
+                regPan.setValue(registers[i].getContent().toHexString());
+            }
+        }
+        updateProgramCounterPanel();
+    }
+
+    /**
+     * Sets a panel, outside this one, that displays the program counter.
+     * @param programCounterPanel the panel
+     */
+    public void setProgramCounterPanel(JByteContainerPanel programCounterPanel){
+        this.programCounterPanel = programCounterPanel;
+        programCounterPanel.setAddress(" PC ");
+        updateProgramCounterPanel();
+    }
+
+    /**
+     * Sets the bus that reports the changes of the displayed registers.
+     * @param eventBus the machine's event bus
+     */
+    public void setEventBus(ChangeEventBus eventBus){
+        if (this.eventBus != null) {
+            this.eventBus.removeObserver(this);
+        }
+        this.eventBus = eventBus;
+        if (eventBus != null) {
+            eventBus.addObserver(this);
+        }
+    }
+
+    public void notifyObserver(Object notificationData) {
+        if (notificationData instanceof ChangeSet) {
+            ChangeSet changes = (ChangeSet) notificationData;
+            if ((changes.getChangedRegisters() != 0) || changes.isProgramCounterChanged()) {
+                synchronized (this) {
+                    dirtyRegisters |= changes.getChangedRegisters();
+                    programCounterDirty |= changes.isProgramCounterChanged();
+                }
+                repaintScheduler.schedule();
+            }
+        }
+    }
+
+    private void updateDirtyPanels() {
+        int dirty;
+        boolean pcDirty;
+        synchronized (this) {
+            dirty = dirtyRegisters;
+            pcDirty = programCounterDirty;
+            dirtyRegisters = 0;
+            programCounterDirty = false;
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (((dirty & (1 << i)) != 0) && (registers[i] != null)) {
+                registerPanels.get(i).setValue(registers[i].getContent().toHexString());
+            }
+        }
+        if (pcDirty) {
+            updateProgramCounterPanel();
+        }
+    }
+
+    private void updateProgramCounterPanel() {
+        if ((programCounterPanel != null) && (processor != null)) {
+            programCounterPanel.setValue(processor.getProgramCounter().get().toHexString());
+        }
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2010 Georgios Migdos <cyberpython@gmail.com>.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package bmach.ui.gui.components;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+
+/**
+ * Runs a component's repaint code on the event dispatch thread at most once
+ * per display frame, however often the machine thread asks for it.
+ *
+ * @author Georgios Migdos <cyberpython@gmail.com>
+ */
+public class RepaintScheduler implements ActionListener {
+
+    public final static int FRAME_INTERVAL;
+
+    static {
+        FRAME_INTERVAL = 1000 / 60;
+    }
+    private final Runnable frame;
+    private final Timer timer;
+    private boolean scheduled;
+
+    /**
+     * Creates a scheduler.
+     * @param frame the code that repaints whatever changed since the last frame
+     */
+    public RepaintScheduler(Runnable frame) {
+        this.frame = frame;
+        this.timer = new Timer(FRAME_INTERVAL, this);
+        this.timer.setRepeats(false);
+        this.scheduled = false;
+    }
+
+    /**
+     * Makes sure the repaint code runs at the next frame. May be called from
+     * any thread.
+     */
+    public synchronized void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            timer.start();
+        }
+    }
+
+    public void actionPerformed(ActionEvent e) {
+        synchronized (this) {
+            scheduled = false;
+        }
+        frame.run();
+    }
+}
@@ -19,26 +19,29 @@ package util.binary.bitpattern;
 import java.util.Arrays;
 
 /**
+ * A bit pattern representing a binary value in two's complement.
+ * The bits are packed in a long, or in an array of longs for patterns longer
+ * than 64 bits, with the bit at index 0 (the most significant one) in the
+ * highest position, so that all operations are done with bit arithmetic.
  *
  * @author Georgios Migdos <cyberpython@gmail.com>
  */
 public class BitPattern implements IBitPattern{
 
     private final static int DEFAULT_LENGTH = 8;
+    private final static int WORD_SIZE = 64;
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
     private int numberOfBits;
     private int max;
-    private boolean[] bits;
-
-    private String hexRegex;
-    private String binaryRegex;
+    private long mask;
+    private long bits;
+    private long[] words;
 
     public BitPattern() {
         this(DEFAULT_LENGTH);
     }
 
     public BitPattern(int length) {
-        this.hexRegex = "0x[0-9a-fA-F]+";
-        this.binaryRegex = "[01]+";
         setLength(length);
     }
 
@@ -62,15 +65,18 @@ public class BitPattern implements IBitPattern{
 
     /**
      * Sets this BitPattern's length (number of bits). All bits are set to 0.
+     * Patterns of up to 64 bits are kept in 'bits', longer ones in 'words',
+     * least significant word first. 'mask' covers the used bits of the most
+     * significant word.
      * @param the new length
      */
     private void setLength(int length) {
-        this.bits = new boolean[length];
         this.numberOfBits = length;
         max = (int) Math.pow(2, numberOfBits - 1);
-        for (int i = 0; i < length; i++) {
-            this.set(i, false);
-        }
+        int topBits = length % WORD_SIZE;
+        this.mask = (topBits == 0) ? -1L : (1L << topBits) - 1;
+        this.bits = 0;
+        this.words = (length > WORD_SIZE) ? new long[(length + WORD_SIZE - 1) / WORD_SIZE] : null;
     }
 
     /**
@@ -81,7 +87,7 @@ public class BitPattern implements IBitPattern{
      */
     public boolean get(int bitIndex) {
         if ((bitIndex>=0) && (bitIndex<numberOfBits)){
-            return this.bits[bitIndex];
+            return getValueBit(numberOfBits - 1 - bitIndex) != 0;
         }else{
             throw new IndexOutOfBoundsException("Bit pattern index out of bounds: "+bitIndex+" - index should be in the range [0, "+(numberOfBits-1)+"]");
         }
@@ -95,12 +101,46 @@ public class BitPattern implements IBitPattern{
      */
     public final void set(int bitIndex, boolean value) {
         if ((bitIndex>=0) && (bitIndex<numberOfBits)){
-            this.bits[bitIndex] = value;
+            setValueBit(numberOfBits - 1 - bitIndex, value);
         }else{
             throw new IndexOutOfBoundsException("Bit pattern index out of bounds: "+bitIndex+" - index should be in the range [0, "+(numberOfBits-1)+"]");
         }
     }
 
+    /**
+     * Returns the bit of the value at a position counted from the least
+     * significant bit.
+     */
+    private long getValueBit(int position) {
+        if (words == null) {
+            return (bits >>> position) & 1L;
+        }
+        return (words[position >>> 6] >>> position) & 1L;
+    }
+
+    private void setValueBit(int position, boolean value) {
+        if (words == null) {
+            if (value) {
+                bits |= 1L << position;
+            } else {
+                bits &= ~(1L << position);
+            }
+        } else {
+            if (value) {
+                words[position >>> 6] |= 1L << position;
+            } else {
+                words[position >>> 6] &= ~(1L << position);
+            }
+        }
+    }
+
+    private void clear() {
+        bits = 0;
+        if (words != null) {
+            Arrays.fill(words, 0L);
+        }
+    }
+
     /**
      * Sets this BitPattern's value using the integer 'value' as the source
      * The 'value' parameter must be an integer in the range
@@ -112,15 +152,13 @@ public class BitPattern implements IBitPattern{
         if ((value < -max) || (value >= max)) {
             throw new BitPatternOverflowException("Invalid value for bit pattern : " + value + " - the value must be in the range [-" + max + ", " + (max - 1) + "]");
         }
-        if (value < 0) {
-            value = 2 * max + value;
-        }
-        int tmp = value;
-        StringBuilder sb = new StringBuilder(Integer.toBinaryString(tmp));
-        while (sb.length() < numberOfBits) {
-            sb.insert(0, '0');
+        if (words == null) {
+            bits = value & mask;
+        } else {
+            Arrays.fill(words, (value < 0) ? -1L : 0L);
+            words[0] = value;
+            words[words.length - 1] &= mask;
         }
-        setValue(sb.toString());
     }
 
    
@@ -128,23 +166,70 @@ public class BitPattern implements IBitPattern{
         if (bitPattern.length() != numberOfBits) {
             throw new NumberFormatException("Invalid bit pattern length : " + bitPattern.length() + " - expected: " + this.numberOfBits);
         }
+        clear();
         for (int i = 0; i < numberOfBits; i++) {
-            if (bitPattern.charAt(i) == '0') {
-                this.set(i, false);
-            } else if (bitPattern.charAt(i) == '1') {
-                this.set(i, true);
-            } else {
-                throw new NumberFormatException("Invalid character in bit pattern: " + bitPattern.charAt(i));
+            if (bitPattern.charAt(i) == '1') {
+                setValueBit(numberOfBits - 1 - i, true);
             }
         }
     }
 
     private void setValueFromHexString(String hexPattern) throws NumberFormatException {
-        try{
-            this.setValueFromBinaryString(BitPatternUtils.hexToBinaryString(hexPattern, this.numberOfBits));
-        }catch(NumberFormatException nfe){
-            throw nfe;
+        int first = 2;
+        while ((first < hexPattern.length() - 1) && (hexPattern.charAt(first) == '0')) {
+            first++;
+        }
+        int digits = hexPattern.length() - first;
+        int length = 4 * (digits - 1) + (32 - Integer.numberOfLeadingZeros(hexDigit(hexPattern.charAt(first))));
+        if (length > numberOfBits) {
+            throw new NumberFormatException("Invalid bit pattern length : " + length + " - expected: " + this.numberOfBits);
+        }
+        clear();
+        for (int i = 0; i < digits; i++) {
+            long digit = hexDigit(hexPattern.charAt(hexPattern.length() - 1 - i));
+            int position = 4 * i;
+            if (words == null) {
+                bits |= digit << position;
+            } else {
+                words[position >>> 6] |= digit << position;
+            }
+        }
+    }
+
+    private static int hexDigit(char c) {
+        if ((c >= '0') && (c <= '9')) {
+            return c - '0';
+        } else if ((c >= 'a') && (c <= 'f')) {
+            return c - 'a' + 10;
+        } else if ((c >= 'A') && (c <= 'F')) {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isBinaryString(String pattern) {
+        if (pattern.length() == 0) {
+            return false;
         }
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if ((c != '0') && (c != '1')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHexString(String pattern) {
+        if ((pattern.length() < 3) || (!pattern.startsWith("0x"))) {
+            return false;
+        }
+        for (int i = 2; i < pattern.length(); i++) {
+            if (hexDigit(pattern.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
 
@@ -158,13 +243,9 @@ public class BitPattern implements IBitPattern{
      * does not have the same length with this IBitPattern.
      */
     public final void setValue(String pattern) throws NumberFormatException{
-        if(pattern.matches(binaryRegex)){
-            try{
-                this.setValueFromBinaryString(pattern);
-            }catch(NumberFormatException nfe){
-                throw nfe;
-            }
-        }else if(pattern.matches(hexRegex)){
+        if(isBinaryString(pattern)){
+            this.setValueFromBinaryString(pattern);
+        }else if(isHexString(pattern)){
             setValueFromHexString(pattern);
         }else{
             throw new NumberFormatException("Invalid pattern : " + pattern +" - not in hexadecimal or binary form.");
@@ -176,10 +257,58 @@ public class BitPattern implements IBitPattern{
      * @return this BitPattern's value
      */
     public int intValue() {
-        if (this.get(0) == true) {
-            return Integer.parseInt(this.toBinaryString().substring(1), 2) - max;
+        if (words == null) {
+            int shift = WORD_SIZE - numberOfBits;
+            return (int) ((bits << shift) >> shift);
+        }
+        return (int) words[0];
+    }
+
+    /**
+     * Returns this BitPattern's bits as an unsigned integer, without sign
+     * extension. Only the lowest 32 bits are returned for longer patterns.
+     * @return this BitPattern's unsigned value
+     */
+    public int getUnsigned() {
+        if (words == null) {
+            return (int) bits;
+        }
+        return (int) words[0];
+    }
+
+    /**
+     * Returns this BitPattern's value in two's complement as an integer.
+     * @return this BitPattern's signed value
+     */
+    public int getSigned() {
+        return intValue();
+    }
+
+    /**
+     * Sets this BitPattern's bits to the lowest length() bits of 'bits'
+     * in two's complement. The value is not range-checked.
+     * @param bits the new bits
+     */
+    public void setBits(int bits) {
+        if (words == null) {
+            this.bits = bits & mask;
+        } else {
+            Arrays.fill(words, (bits < 0) ? -1L : 0L);
+            words[0] = bits;
+            words[words.length - 1] &= mask;
+        }
+    }
+
+    /**
+     * Copies the bits of another IBitPattern into this BitPattern.
+     * @param bitPattern the IBitPattern to copy
+     * @throws ArithmeticException if the two patterns have different lengths
+     */
+    public void copyFrom(IBitPattern bitPattern) {
+        if (numberOfBits == bitPattern.length()) {
+            copyBits(bitPattern);
         } else {
-            return Integer.parseInt(this.toBinaryString(), 2);
+            throw new ArithmeticException("Cannot copy bit patterns of different length: " + this.length() + " and " + bitPattern.length());
         }
     }
 
@@ -197,11 +326,11 @@ public class BitPattern implements IBitPattern{
      * @return this BitPattern's value
      */
     public String toBinaryString() {
-        StringBuilder sb = new StringBuilder();
+        char[] chars = new char[numberOfBits];
         for (int i = 0; i < numberOfBits; i++) {
-            sb.append(get(i) == false ? '0' : '1');
+            chars[i] = (getValueBit(numberOfBits - 1 - i) == 0) ? '0' : '1';
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
@@ -209,7 +338,26 @@ public class BitPattern implements IBitPattern{
      * @return this BitPattern's value
      */
     public String toHexString() {
-        return "0x"+BitPatternUtils.toHexString(Integer.parseInt(this.toBinaryString(),2), numberOfBits/4).toUpperCase();
+        int digits = (numberOfBits + 3) / 4;
+        int minDigits = Math.max(1, numberOfBits / 4);
+        while ((digits > minDigits) && (getHexDigit(digits - 1) == 0)) {
+            digits--;
+        }
+        char[] chars = new char[digits + 2];
+        chars[0] = '0';
+        chars[1] = 'x';
+        for (int i = 0; i < digits; i++) {
+            chars[2 + i] = HEX_DIGITS[getHexDigit(digits - 1 - i)];
+        }
+        return new String(chars);
+    }
+
+    private int getHexDigit(int index) {
+        int position = 4 * index;
+        if (words == null) {
+            return (position < WORD_SIZE) ? (int) ((bits >>> position) & 0xF) : 0;
+        }
+        return (int) ((words[position >>> 6] >>> position) & 0xF);
     }
 
 
@@ -218,47 +366,71 @@ public class BitPattern implements IBitPattern{
      * Rotates this BitPattern's bits to the left.
      */
     public void rotateLeft() {
-        int lastIndex = this.numberOfBits - 1;
-        boolean tmp = this.get(0);
-        for (int i = 0; i < lastIndex; i++) {
-            this.set(i, this.get(i + 1));
+        if (words == null) {
+            bits = ((bits << 1) | (bits >>> (numberOfBits - 1))) & mask;
+        } else {
+            shiftWordsLeft(getValueBit(numberOfBits - 1));
         }
-        this.set(lastIndex, tmp);
     }
 
     /**
      * Rotates this BitPattern's bits to the right.
      */
     public void rotateRight() {
-        int lastIndex = this.numberOfBits - 1;
-        boolean tmp = this.get(lastIndex);
-        for (int i = lastIndex; i > 0; i--) {
-            this.set(i, this.get(i - 1));
+        if (words == null) {
+            bits = (bits >>> 1) | ((bits & 1L) << (numberOfBits - 1));
+        } else {
+            shiftWordsRight(getValueBit(0));
         }
-        this.set(0, tmp);
     }
 
     /**
      * Shifts (arithmetic shift) this BitPattern's bits one place to the left.
      */
     public void shiftLeft() { //arithmetic shift
-        int lastIndex = this.numberOfBits - 1;
-        for (int i = 0; i < lastIndex; i++) {
-            this.set(i, this.get(i + 1));
+        if (words == null) {
+            bits = (bits << 1) & mask;
+        } else {
+            shiftWordsLeft(0L);
         }
-        this.set(lastIndex, false);
     }
 
     /**
      * Shifts (arithmetic shift) this BitPattern's bits one place to the right.
      */
     public void shiftRight() { //arithmetic shift
-        int lastIndex = this.numberOfBits - 1;
-        boolean tmp = this.get(0);
-        for (int i = lastIndex; i > 0; i--) {
-            this.set(i, this.get(i - 1));
+        if (words == null) {
+            bits = (bits >>> 1) | (bits & (1L << (numberOfBits - 1)));
+        } else {
+            shiftWordsRight(getValueBit(numberOfBits - 1));
+        }
+    }
+
+    /**
+     * Shifts the words one place to the left, shifting 'in' into the least
+     * significant bit.
+     */
+    private void shiftWordsLeft(long in) {
+        for (int i = words.length - 1; i > 0; i--) {
+            words[i] = (words[i] << 1) | (words[i - 1] >>> 63);
+        }
+        words[0] = (words[0] << 1) | in;
+        words[words.length - 1] &= mask;
+    }
+
+    /**
+     * Shifts the words one place to the right, shifting 'in' into the most
+     * significant bit.
+     */
+    private void shiftWordsRight(long in) {
+        int last = words.length - 1;
+        for (int i = 0; i < last; i++) {
+            words[i] = (words[i] >>> 1) | (words[i + 1] << 63);
+        }
+        words[last] >>>= 1;
+        if (in != 0) {
+            setValueBit(numberOfBits - 1, true);
         }
-        this.set(0, tmp);
     }
 
     /**
@@ -269,19 +441,54 @@ public class BitPattern implements IBitPattern{
      */
     public void add(IBitPattern bitPattern)throws BitPatternOverflowException{
         if (numberOfBits == bitPattern.length()) {
-            int value = this.intValue() + bitPattern.intValue();
-            this.setValue(value);
+            if (numberOfBits <= 32) {
+                this.setValue(this.intValue() + bitPattern.intValue());
+            } else {
+                addWords(bitPattern);
+            }
         } else {
             throw new ArithmeticException("Cannot add bit patterns of different length: " + this.length() + " and " + bitPattern.length());
         }
     }
 
+    /**
+     * Adds patterns longer than an int, word by word.
+     */
+    private void addWords(IBitPattern bitPattern) throws BitPatternOverflowException {
+        long[] a = (words == null) ? new long[]{bits} : words;
+        long[] b = (words == null) ? new long[]{bitsOf(bitPattern)} : wordsOf(bitPattern);
+        long[] sum = new long[a.length];
+        long carry = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i] + carry;
+            carry = ((a[i] & b[i]) | ((a[i] | b[i]) & ~sum[i])) >>> 63;
+        }
+        sum[sum.length - 1] &= mask;
+        int signPosition = (numberOfBits - 1) & 63;
+        long signA = (a[a.length - 1] >>> signPosition) & 1L;
+        long signB = (b[b.length - 1] >>> signPosition) & 1L;
+        long signSum = (sum[sum.length - 1] >>> signPosition) & 1L;
+        if ((signA == signB) && (signSum != signA)) {
+            throw new BitPatternOverflowException("Invalid value for bit pattern : the sum does not fit in " + numberOfBits + " bits");
+        }
+        if (words == null) {
+            bits = sum[0];
+        } else {
+            System.arraycopy(sum, 0, words, 0, sum.length);
+        }
+    }
+
     /**
      * Applies the bitwise NOT operator to this BitPattern's bits.
      */
     public void not() {
-        for(int i=0; i<this.numberOfBits; i++){
-            this.bits[i] = !this.bits[i];
+        if (words == null) {
+            bits = ~bits & mask;
+        } else {
+            for (int i = 0; i < words.length; i++) {
+                words[i] = ~words[i];
+            }
+            words[words.length - 1] &= mask;
         }
     }
 
@@ -293,8 +500,13 @@ public class BitPattern implements IBitPattern{
      */
     public void and(IBitPattern bitPattern) {
         if (numberOfBits == bitPattern.length()) {
-            for(int i=0; i<numberOfBits; i++){
-                this.set(i, this.get(i) && bitPattern.get(i) );
+            if (words == null) {
+                bits &= bitsOf(bitPattern);
+            } else {
+                long[] operand = wordsOf(bitPattern);
+                for (int i = 0; i < words.length; i++) {
+                    words[i] &= operand[i];
+                }
             }
         } else {
             throw new ArithmeticException("Cannot apply AND to bit patterns of different length: " + this.length() + " and " + bitPattern.length());
@@ -309,8 +521,13 @@ public class BitPattern implements IBitPattern{
      */
     public void or(IBitPattern bitPattern) {
         if (numberOfBits == bitPattern.length()) {
-            for(int i=0; i<numberOfBits; i++){
-                this.set(i, this.get(i) || bitPattern.get(i) );
+            if (words == null) {
+                bits |= bitsOf(bitPattern);
+            } else {
+                long[] operand = wordsOf(bitPattern);
+                for (int i = 0; i < words.length; i++) {
+                    words[i] |= operand[i];
+                }
             }
         } else {
             throw new ArithmeticException("Cannot apply OR to bit patterns of different length: " + this.length() + " and " + bitPattern.length());
@@ -325,14 +542,81 @@ public class BitPattern implements IBitPattern{
      */
     public void xor(IBitPattern bitPattern) {
         if (numberOfBits == bitPattern.length()) {
-            for(int i=0; i<numberOfBits; i++){
-                this.set(i, this.get(i) ^ bitPattern.get(i) );
+            if (words == null) {
+                bits ^= bitsOf(bitPattern);
+            } else {
+                long[] operand = wordsOf(bitPattern);
+                for (int i = 0; i < words.length; i++) {
+                    words[i] ^= operand[i];
+                }
             }
         } else {
             throw new ArithmeticException("Cannot apply XOR to bit patterns of different length: " + this.length() + " and " + bitPattern.length());
         }
     }
 
+    /**
+     * Returns the packed bits of a pattern of this pattern's length, when it
+     * is no longer than 64 bits.
+     */
+    private long bitsOf(IBitPattern bitPattern) {
+        if (bitPattern instanceof BitPattern) {
+            return ((BitPattern) bitPattern).bits;
+        }
+        long value = 0;
+        for (int i = 0; i < numberOfBits; i++) {
+            value = (value << 1) | (bitPattern.get(i) ? 1L : 0L);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the packed words of a pattern of this pattern's length, when it
+     * is longer than 64 bits.
+     */
+    private long[] wordsOf(IBitPattern bitPattern) {
+        if (bitPattern instanceof BitPattern) {
+            return ((BitPattern) bitPattern).words;
+        }
+        BitPattern copy = new BitPattern(numberOfBits);
+        copy.copyBits(bitPattern);
+        return copy.words;
+    }
+
+    /**
+     * Copies the bits of a pattern of this pattern's length.
+     */
+    private void copyBits(IBitPattern bitPattern) {
+        if (bitPattern instanceof BitPattern) {
+            BitPattern p = (BitPattern) bitPattern;
+            bits = p.bits;
+            if (words != null) {
+                System.arraycopy(p.words, 0, words, 0, words.length);
+            }
+        } else {
+            for (int i = 0; i < numberOfBits; i++) {
+                set(i, bitPattern.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns a word of this pattern's value sign-extended to any number of
+     * words.
+     */
+    private long signedWord(int index) {
+        int last = (words == null) ? 0 : words.length - 1;
+        if (index > last) {
+            return (getValueBit(numberOfBits - 1) != 0) ? -1L : 0L;
+        }
+        long word = (words == null) ? bits : words[index];
+        if (index < last) {
+            return word;
+        }
+        int shift = (WORD_SIZE - numberOfBits % WORD_SIZE) % WORD_SIZE;
+        return (word << shift) >> shift;
+    }
+
 
     /**
      * Compares o to this BitPattern.
@@ -345,6 +629,21 @@ public class BitPattern implements IBitPattern{
         if(o ==null){
             return 0;
         }
+        if (o instanceof BitPattern) {
+            BitPattern p = (BitPattern) o;
+            int length = Math.max((words == null) ? 1 : words.length, (p.words == null) ? 1 : p.words.length);
+            for (int i = length - 1; i >= 0; i--) {
+                long myWord = signedWord(i);
+                long oWord = p.signedWord(i);
+                if (myWord != oWord) {
+                    if (i == length - 1) {
+                        return (myWord < oWord) ? -1 : 1;
+                    }
+                    return ((myWord ^ Long.MIN_VALUE) < (oWord ^ Long.MIN_VALUE)) ? -1 : 1;
+                }
+            }
+            return 0;
+        }
         int myValue = this.intValue();
         int oValue = o.intValue();
         if(myValue < oValue){
@@ -365,9 +664,20 @@ public class BitPattern implements IBitPattern{
      */
     @Override
     public boolean equals(Object obj) {
-        if ( (obj!=null) && (obj instanceof IBitPattern) ){
+        if (obj instanceof BitPattern) {
+            BitPattern o = (BitPattern) obj;
+            return (o.numberOfBits == this.numberOfBits) && (o.bits == this.bits) && Arrays.equals(o.words, this.words);
+        }else if (obj instanceof IBitPattern){
             IBitPattern o = (IBitPattern) obj;
-            return o.hashCode() == this.hashCode();
+            if (o.length() != this.numberOfBits) {
+                return false;
+            }
+            for (int i = 0; i < numberOfBits; i++) {
+                if (o.get(i) != this.get(i)) {
+                    return false;
+                }
+            }
+            return true;
         }else{
             return false;
         }
@@ -377,7 +687,7 @@ public class BitPattern implements IBitPattern{
     public int hashCode() {
         int hash = 5;
         hash = 29 * hash + this.numberOfBits;
-        hash = 29 * hash + Arrays.hashCode(this.bits);
+        hash = 29 * hash + ((words == null) ? (int) (bits ^ (bits >>> 32)) : Arrays.hashCode(words));
         return hash;
     }
 
@@ -390,7 +700,7 @@ public class BitPattern implements IBitPattern{
      */
     public static IBitPattern add(IBitPattern a, IBitPattern b)throws BitPatternOverflowException {
         BitPattern result = new BitPattern(a.length());
-        result.setValue(a.intValue());
+        result.copyBits(a);
         result.add(b);
         return result;
     }
@@ -403,7 +713,7 @@ public class BitPattern implements IBitPattern{
      */
     public static IBitPattern and(IBitPattern a, IBitPattern b)throws BitPatternOverflowException {
         BitPattern result = new BitPattern(a.length());
-        result.setValue(a.intValue());
+        result.copyBits(a);
         result.and(b);
         return result;
     }
@@ -416,7 +726,7 @@ public class BitPattern implements IBitPattern{
      */
     public static IBitPattern or(IBitPattern a, IBitPattern b)throws BitPatternOverflowException {
         BitPattern result = new BitPattern(a.length());
-        result.setValue(a.intValue());
+        result.copyBits(a);
         result.or(b);
         return result;
     }
@@ -429,7 +739,7 @@ public class BitPattern implements IBitPattern{
      */
     public static IBitPattern xor(IBitPattern a, IBitPattern b)throws BitPatternOverflowException {
         BitPattern result = new BitPattern(a.length());
-        result.setValue(a.intValue());
+        result.copyBits(a);
         result.xor(b);
         return result;
     }
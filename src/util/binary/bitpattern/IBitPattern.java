@@ -51,6 +51,34 @@ public interface IBitPattern extends Comparable<IBitPattern>{
      */
     public int intValue();
 
+    /**
+     * Returns this IBitPattern's bits as an unsigned integer, without sign
+     * extension. Only the lowest 32 bits are returned for longer patterns.
+     * @return this IBitPattern's unsigned value
+     */
+    public int getUnsigned();
+
+    /**
+     * Returns this IBitPattern's value in two's complement as an integer.
+     * This is the same as intValue().
+     * @return this IBitPattern's signed value
+     */
+    public int getSigned();
+
+    /**
+     * Sets this IBitPattern's bits to the lowest length() bits of 'bits'
+     * in two's complement. The value is not range-checked.
+     * @param bits the new bits
+     */
+    public void setBits(int bits);
+
+    /**
+     * Copies the bits of another IBitPattern into this IBitPattern.
+     * @param iBitPattern the IBitPattern to copy
+     * @throws ArithmeticException if the two patterns have different lengths
+     */
+    public void copyFrom(IBitPattern iBitPattern);
+
     /**
      * Sets this IBitPattern's value using the String 'pattern' as the source.
      * The 'pattern' parameter can be either a two's complement hexadecimal value matched by the